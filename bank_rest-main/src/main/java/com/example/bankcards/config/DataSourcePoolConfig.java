@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// размер пула Hikari считается при старте, а не задаётся числом в конфиге: ядра * 2 + 1
+// (больше соединений CPU базы не переварит), но не больше доли max_connections PostgreSQL,
+// приходящейся на один экземпляр приложения после резерва под миграции и администрирование
+@Configuration
+@ConditionalOnProperty(name = "persistence.pool.auto-size", havingValue = "true")
+public class DataSourcePoolConfig {
+
+    @Bean
+    public static BeanPostProcessor hikariPoolSizer(@Value("${persistence.pool.db-max-connections:100}") int dbMaxConnections,
+                                                    @Value("${persistence.pool.reserved-connections:10}") int reservedConnections,
+                                                    @Value("${persistence.pool.instances:1}") int instances) {
+        int byCores = 2 * Runtime.getRuntime().availableProcessors() + 1;
+        int byDatabase = (dbMaxConnections - reservedConnections) / Math.max(1, instances);
+        int poolSize = Math.max(2, Math.min(byCores, byDatabase));
+
+        return new BeanPostProcessor() {
+            // после привязки spring.datasource.hikari.*, но до первого getConnection, когда пул ещё не запущен
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    dataSource.setMaximumPoolSize(poolSize);
+                    dataSource.setMinimumIdle(poolSize);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.security.EcdsaTokenSigner;
+import com.example.bankcards.security.HmacTokenSigner;
+import com.example.bankcards.security.TokenSigner;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JwtConfig {
+
+    // ключи выводятся один раз при старте, а не на каждую подпись и проверку
+    @Bean
+    public TokenSigner tokenSigner(@Value("${jwt.algorithm:HS256}") SignatureAlgorithm algorithm,
+                                   @Value("${jwt.secret:}") String secret,
+                                   @Value("${jwt.ec.private-key:}") String ecPrivateKey,
+                                   @Value("${jwt.ec.public-key:}") String ecPublicKey) {
+        return switch (algorithm) {
+            case HS256 -> new HmacTokenSigner(secret);
+            case ES256 -> new EcdsaTokenSigner(ecPrivateKey, ecPublicKey);
+            default -> throw new IllegalArgumentException("Неподдерживаемый алгоритм подписи JWT: " + algorithm);
+        };
+    }
+
+    // собранный JwtParser неизменяем и потокобезопасен, поэтому один на всё приложение
+    @Bean
+    public JwtParser jwtParser(TokenSigner tokenSigner) {
+        return Jwts.parserBuilder()
+                .setSigningKey(tokenSigner.verificationKey())
+                .build();
+    }
+}
@@ -2,18 +2,24 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.RefreshTokenRequest;
 import com.example.bankcards.dto.UserCreateRequest;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.CurrentUserId;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.UserService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
@@ -26,12 +32,28 @@ public class AuthController {
         this.userService = userService;
     }
 
+    // асинхронный ответ: поток Tomcat освобождается, пока пароль проверяется на пуле входа
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> createAuthenticationToken(@Valid @RequestBody AuthRequest authRequest) {
-        AuthResponse response = authService.createAuthenticationToken(authRequest);
+    public CompletableFuture<ResponseEntity<AuthResponse>> createAuthenticationToken(@Valid @RequestBody AuthRequest authRequest) {
+        return authService.createAuthenticationTokenAsync(authRequest)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refreshAuthenticationToken(@Valid @RequestBody RefreshTokenRequest request) {
+        AuthResponse response = authService.refreshAuthenticationToken(request);
         return ResponseEntity.ok(response);
     }
 
+    // фильтр уже проверил токен, поэтому заголовок здесь заведомо вида "Bearer <jwt>"
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authHeader,
+                                       @CurrentUserId Long userId,
+                                       @Valid @RequestBody(required = false) RefreshTokenRequest request) {
+        authService.logout(authHeader.substring(7), userId, request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/register")
     public ResponseEntity<String> registerUser(@Valid @RequestBody UserCreateRequest request) {
         userService.registerNewUser(request);
@@ -1,36 +1,45 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportResponse;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.dto.CardUpdateRequest;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResponse;
+import com.example.bankcards.security.CurrentUserId;
+import com.example.bankcards.service.CardFileFormat;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
-import com.example.bankcards.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
-import com.example.bankcards.exception.ResourceNotFoundException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-
-import java.util.Optional;
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/api/cards")
 public class CardController {
 
     private final CardService cardService;
-    private final UserService userService;
+    private final CardExportService cardExportService;
+    private final CardImportService cardImportService;
 
-    public CardController(CardService cardService, UserService userService) {
+    public CardController(CardService cardService, CardExportService cardExportService, CardImportService cardImportService) {
         this.cardService = cardService;
-        this.userService = userService;
+        this.cardExportService = cardExportService;
+        this.cardImportService = cardImportService;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -75,6 +84,39 @@ public class CardController {
         return ResponseEntity.ok(cards);
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/admin", params = "limit")
+    public ResponseEntity<CursorPage<CardResponse>> getAllCardsAfter(@RequestParam(required = false) String after,
+                                                                     @RequestParam int limit) {
+        CursorPage<CardResponse> cards = cardService.findAllCardsAfter(after, limit);
+        return ResponseEntity.ok(cards);
+    }
+
+    // тело пишется асинхронно после выхода из метода; потоковая выгрузка вместо обхода страниц с OFFSET и count
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportCards(@RequestParam(name = "format", defaultValue = "ndjson") String formatName) {
+        CardFileFormat format = CardFileFormat.fromParameter(formatName);
+        StreamingResponseBody body = outputStream -> cardExportService.export(format, outputStream);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, format.getContentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("cards." + format.getFileExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    // тело читается из потока запроса по мере обработки, а не буферизуется целиком
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/admin/import")
+    public ResponseEntity<CardImportResponse> importCards(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                          InputStream body) throws IOException {
+        CardFileFormat format = CardFileFormat.fromContentType(contentType);
+        CardImportResponse response = cardImportService.importCards(format, body);
+        return ResponseEntity.ok(response);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/admin/{cardId}")
     public ResponseEntity<CardResponse> getCardById(@PathVariable Long cardId) {
@@ -85,46 +127,57 @@ public class CardController {
     @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
 
     @GetMapping("/my")
-    public ResponseEntity<Page<CardResponse>> getMyCards(Pageable pageable) {
-        Long userId = getCurrentUserId();
+    public ResponseEntity<Page<CardResponse>> getMyCards(@CurrentUserId Long userId, Pageable pageable) {
         Page<CardResponse> cards = cardService.getUserCards(userId, pageable);
         return ResponseEntity.ok(cards);
     }
 
+    @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
+    @GetMapping(value = "/my", params = "limit")
+    public ResponseEntity<CursorPage<CardResponse>> getMyCardsAfter(@CurrentUserId Long userId,
+                                                                    @RequestParam(required = false) String after,
+                                                                    @RequestParam int limit) {
+        CursorPage<CardResponse> cards = cardService.getUserCardsAfter(userId, after, limit);
+        return ResponseEntity.ok(cards);
+    }
+
     @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
 
     @GetMapping("/my/{cardId}")
-    public ResponseEntity<CardResponse> getMyCardById(@PathVariable Long cardId) {
-        Long userId = getCurrentUserId();
+    public ResponseEntity<CardResponse> getMyCardById(@CurrentUserId Long userId, @PathVariable Long cardId) {
         CardResponse card = cardService.getUserCardById(cardId, userId);
         return ResponseEntity.ok(card);
     }
 
     @PreAuthorize("hasRole('USER')")
     @PostMapping("/transfer")
-    public ResponseEntity<String> transferFunds(@Valid @RequestBody TransferRequest request) {
-        Long userId = getCurrentUserId();
-        cardService.transferFunds(userId, request);
-        return ResponseEntity.ok("Средства успешно переведены");
+    public ResponseEntity<TransferResponse> transferFunds(@CurrentUserId Long userId,
+                                                          @Valid @RequestBody TransferRequest request,
+                                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        TransferResponse response = cardService.transferFunds(userId, request, idempotencyKey);
+        return ResponseEntity.ok(response);
     }
 
     @PreAuthorize("hasRole('USER')")
-    @PatchMapping("/my/{cardId}/request-block")
-    public ResponseEntity<CardResponse> requestBlockCard(@PathVariable Long cardId) {
-        Long userId = getCurrentUserId();
-        CardResponse response = cardService.requestBlockCard(cardId, userId);
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<BatchTransferResponse> transferFundsBatch(@CurrentUserId Long userId,
+                                                                    @Valid @RequestBody BatchTransferRequest request) {
+        BatchTransferResponse response = cardService.transferFundsBatch(userId, request);
         return ResponseEntity.ok(response);
     }
 
+    @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
+    @GetMapping("/my/transfers")
+    public ResponseEntity<Page<TransferResponse>> getMyTransfers(@CurrentUserId Long userId, Pageable pageable) {
+        Page<TransferResponse> transfers = cardService.getUserTransfers(userId, pageable);
+        return ResponseEntity.ok(transfers);
+    }
 
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            throw new IllegalStateException("Юзер не зарегался");
-        }
-        String username = ((UserDetails) authentication.getPrincipal()).getUsername();
-         return Optional.ofNullable(userService.findByUsername(username))
-                .map(com.example.bankcards.entity.User::getId)
-                .orElseThrow(() -> new ResourceNotFoundException("Авторизированный юзер не найден в бд"));
+    @PreAuthorize("hasRole('USER')")
+    @PatchMapping("/my/{cardId}/request-block")
+    public ResponseEntity<CardResponse> requestBlockCard(@CurrentUserId Long userId, @PathVariable Long cardId) {
+        CardResponse response = cardService.requestBlockCard(cardId, userId);
+        return ResponseEntity.ok(response);
     }
+
 }
\ No newline at end of file
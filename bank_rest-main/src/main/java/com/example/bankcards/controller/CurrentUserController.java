@@ -1,9 +1,12 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.PasswordChangeRequest;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.security.Role;
+import com.example.bankcards.security.CurrentUserId;
 import com.example.bankcards.service.UserService;
+import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -28,4 +31,13 @@ public class CurrentUserController {
         UserResponse user = userService.getUserByUsername(username);
         return ResponseEntity.ok(user);
     }
+
+    // после смены пароля все выданные токены перестают действовать, нужен повторный вход
+    @PatchMapping("/me/password")
+    @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
+    public ResponseEntity<Void> changePassword(@CurrentUserId Long userId,
+                                               @Valid @RequestBody PasswordChangeRequest request) {
+        userService.changePassword(userId, request.getCurrentPassword(), request.getNewPassword());
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -1,17 +1,17 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserResponse;
-import com.example.bankcards.entity.User;
 import com.example.bankcards.security.Role;
 import com.example.bankcards.service.UserService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.core.Authentication;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/admin/users")
 @PreAuthorize("hasRole('ADMIN')")
@@ -24,14 +24,23 @@ public class UserController {
     }
 
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.findAllUsers();
+    public ResponseEntity<Page<UserResponse>> getAllUsers(Pageable pageable,
+                                                          @RequestParam(defaultValue = "false") boolean cardCounts) {
+        Page<UserResponse> users = userService.findAllUsers(pageable, cardCounts);
+        return ResponseEntity.ok(users);
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPage<UserResponse>> getAllUsersAfter(@RequestParam(required = false) String after,
+                                                                     @RequestParam int limit,
+                                                                     @RequestParam(defaultValue = "false") boolean cardCounts) {
+        CursorPage<UserResponse> users = userService.findAllUsersAfter(after, limit, cardCounts);
         return ResponseEntity.ok(users);
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<User> getUserById(@PathVariable Long userId) {
-        User user = userService.findById(userId);
+    public ResponseEntity<UserResponse> getUserById(@PathVariable Long userId) {
+        UserResponse user = userService.getUserById(userId);
         return ResponseEntity.ok(user);
     }
 
@@ -44,8 +53,8 @@ public class UserController {
     }
 
     @PatchMapping("/{userId}/role")
-    public ResponseEntity<User> updateUserRole(@PathVariable Long userId, @RequestParam Role newRole) {
-        User updatedUser = userService.updateUserRole(userId, newRole);
+    public ResponseEntity<UserResponse> updateUserRole(@PathVariable Long userId, @RequestParam Role newRole) {
+        UserResponse updatedUser = userService.updateUserRole(userId, newRole);
         return ResponseEntity.ok(updatedUser);
     }
 
@@ -11,12 +11,18 @@ public class AuthResponse {
     private String token;
     private String username;
     private String role;
+    private String refreshToken;
     public AuthResponse(String token, String username, String role) {
         this.token = token;
         this.username = username;
         this.role = role;
     }
 
+    public AuthResponse(String token, String username, String role, String refreshToken) {
+        this(token, username, role);
+        this.refreshToken = refreshToken;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -40,4 +46,12 @@ public class AuthResponse {
     public void setRole(String role) {
         this.role = role;
     }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
 }
\ No newline at end of file
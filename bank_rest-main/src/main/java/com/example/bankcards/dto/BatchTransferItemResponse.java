@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import lombok.Data;
+
+@Data
+public class BatchTransferItemResponse {
+    // позиция перевода в исходном запросе
+    private int index;
+    private boolean success;
+    // заполнено только для успешного перевода
+    private TransferResponse transfer;
+    // заполнено только для неуспешного перевода
+    private String error;
+}
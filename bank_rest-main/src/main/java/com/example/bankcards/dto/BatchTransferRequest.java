@@ -0,0 +1,16 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+
+    @NotEmpty(message = "Список переводов не может быть пустым")
+    @Size(max = 10000, message = "За один запрос можно выполнить не более 10000 переводов")
+    private List<@Valid TransferRequest> transfers;
+}
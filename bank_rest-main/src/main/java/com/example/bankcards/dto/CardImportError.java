@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardImportError {
+    // номер строки в загруженном файле, начиная с 1 (заголовок CSV тоже считается)
+    private long line;
+    private String error;
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardImportResponse {
+    private long imported;
+    private long failed;
+    private List<CardImportError> errors;
+    // ошибок больше, чем вернулось в errors; failed при этом считает все
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+// строка файла массовой загрузки: те же поля, что при выпуске одной карты, плюс владелец
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class CardImportRow extends CardCreateRequest {
+    @NotNull(message = "ID пользователя не может быть пустым")
+    private Long userId;
+}
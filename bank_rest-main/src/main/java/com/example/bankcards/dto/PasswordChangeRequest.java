@@ -0,0 +1,16 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class PasswordChangeRequest {
+
+    @NotBlank(message = "Текущий пароль не может быть пустым")
+    private String currentPassword;
+
+    @NotBlank(message = "Новый пароль не может быть пустым")
+    @Size(min = 6, message = "Пароль должен содержать не менее 6 символов")
+    private String newPassword;
+}
@@ -1,10 +1,23 @@
 package com.example.bankcards.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class UserResponse {
     private Long id;
     private String username;
     private String role;
     private String cardHolderName;
+    // заполняется только по запросу (cardCounts=true), иначе в JSON не попадает
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long cardCount;
+
+    public Long getCardCount() {
+        return cardCount;
+    }
+
+    public void setCardCount(Long cardCount) {
+        this.cardCount = cardCount;
+    }
 
     public String getCardHolderName() {
         return cardHolderName;
@@ -14,13 +14,26 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 public class Card {
+
+    public static final String ID_SEQUENCE = "cards_seq";
+    // шаг cards_seq: один nextval = блок из 50 id (nextval - 49 .. nextval)
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // пул из 50 id на один nextval — иначе Hibernate не может пакетировать INSERT
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_seq")
+    @SequenceGenerator(name = "card_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "card_number", nullable = false, unique = true)
     private String cardNumber;
 
+    @Column(name = "card_number_hash", nullable = false, unique = true, length = 64)
+    private String cardNumberHash;
+
+    @Column(name = "card_last4", nullable = false, length = 4)
+    private String cardLastFour;
+
     @Column(name = "cardholder_name", nullable = false)
     private String cardholderName;
     @Column(name = "expiry_date", nullable = false)
@@ -33,6 +46,10 @@ public class Card {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal balance;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -62,6 +79,22 @@ public class Card {
         this.cardNumber = cardNumber;
     }
 
+    public String getCardNumberHash() {
+        return cardNumberHash;
+    }
+
+    public void setCardNumberHash(String cardNumberHash) {
+        this.cardNumberHash = cardNumberHash;
+    }
+
+    public String getCardLastFour() {
+        return cardLastFour;
+    }
+
+    public void setCardLastFour(String cardLastFour) {
+        this.cardLastFour = cardLastFour;
+    }
+
     public LocalDate getExpiryDate() {
         return expiryDate;
     }
@@ -86,6 +119,14 @@ public class Card {
         this.status = status;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public User getUser() {
         return user;
     }
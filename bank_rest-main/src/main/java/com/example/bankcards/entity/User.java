@@ -14,7 +14,8 @@ import com.example.bankcards.security.Role;
 @AllArgsConstructor
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -30,6 +31,10 @@ public class User {
     @Column(name = "card_holder_name")
     private String cardHolderName;
 
+    // попадает в claim "ver" токена; увеличивается, когда выданные токены пользователя должны перестать действовать
+    @Column(name = "token_version", nullable = false)
+    private Long tokenVersion = 0L;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Card> cards;
 
@@ -52,6 +57,14 @@ public class User {
         this.cardHolderName = cardHolderName;
     }
 
+    public Long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(Long tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
     public List<Card> getCards() {
         return cards;
     }
@@ -0,0 +1,16 @@
+package com.example.bankcards.migration;
+
+import com.example.bankcards.util.CardNumberUtil;
+
+public class CardLastFourBackfill extends CardNumberBackfill {
+
+    @Override
+    protected String columnName() {
+        return "card_last4";
+    }
+
+    @Override
+    protected String columnValue(CardNumberUtil cardNumberUtil, String cardNumber) {
+        return cardNumberUtil.lastFourDigits(cardNumber);
+    }
+}
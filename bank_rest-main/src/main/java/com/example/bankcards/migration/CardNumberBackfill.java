@@ -0,0 +1,101 @@
+package com.example.bankcards.migration;
+
+import com.example.bankcards.util.CardNumberUtil;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// расшифровывает номера карт порциями по id и заполняет производную от номера колонку
+public abstract class CardNumberBackfill implements CustomTaskChange {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private String secretKey;
+    private String hashKey;
+    private int updatedRows;
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    public void setSecretKey(String secretKey) {
+        this.secretKey = secretKey;
+    }
+
+    public String getHashKey() {
+        return hashKey;
+    }
+
+    public void setHashKey(String hashKey) {
+        this.hashKey = hashKey;
+    }
+
+    protected abstract String columnName();
+
+    protected abstract String columnValue(CardNumberUtil cardNumberUtil, String cardNumber);
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        if (secretKey == null || hashKey == null) {
+            throw new CustomChangeException("Не заданы ключи шифрования номеров карт (cardSecretKey, cardHashKey)");
+        }
+        CardNumberUtil cardNumberUtil = new CardNumberUtil(secretKey, hashKey);
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        String column = columnName();
+
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, card_number FROM cards WHERE " + column + " IS NULL AND id > ? ORDER BY id LIMIT ?");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE cards SET " + column + " = ? WHERE id = ?")) {
+            long lastId = 0;
+            int chunkRows;
+            do {
+                chunkRows = 0;
+                select.setLong(1, lastId);
+                select.setInt(2, CHUNK_SIZE);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong("id");
+                        String cardNumber = cardNumberUtil.decryptCardNumber(rs.getString("card_number"));
+                        update.setString(1, columnValue(cardNumberUtil, cardNumber));
+                        update.setLong(2, lastId);
+                        update.addBatch();
+                        chunkRows++;
+                    }
+                }
+                if (chunkRows > 0) {
+                    update.executeBatch();
+                    updatedRows += chunkRows;
+                }
+            } while (chunkRows == CHUNK_SIZE);
+        } catch (SQLException e) {
+            throw new CustomChangeException("Ошибка при заполнении " + column, e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return columnName() + " заполнен для " + updatedRows + " карт";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
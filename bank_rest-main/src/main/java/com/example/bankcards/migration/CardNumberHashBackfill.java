@@ -0,0 +1,16 @@
+package com.example.bankcards.migration;
+
+import com.example.bankcards.util.CardNumberUtil;
+
+public class CardNumberHashBackfill extends CardNumberBackfill {
+
+    @Override
+    protected String columnName() {
+        return "card_number_hash";
+    }
+
+    @Override
+    protected String columnValue(CardNumberUtil cardNumberUtil, String cardNumber) {
+        return cardNumberUtil.hashCardNumber(cardNumber);
+    }
+}
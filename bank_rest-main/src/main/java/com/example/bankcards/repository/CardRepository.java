@@ -2,18 +2,50 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
+    String CARD_SUMMARY_SELECT = "select c.id as id, c.cardLastFour as cardLastFour, c.cardholderName as cardholderName, "
+            + "c.expiryDate as expiryDate, c.status as status, c.balance as balance, c.user.id as userId from Card c";
+
     Page<Card> findByUserId(Long userId, Pageable pageable);
     Optional<Card> findByCardNumber(String cardNumber);
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
+    boolean existsByCardNumberHash(String cardNumberHash);
+
+    @Query("select c.id from Card c where c.cardNumberHash = :cardNumberHash")
+    Optional<Long> findIdByCardNumberHash(@Param("cardNumberHash") String cardNumberHash);
+
+    // один IN-запрос и находит, и блокирует карты пакетного перевода; ORDER BY id задаёт порядок
+    // захвата блокировок, общий для пакетов и одиночных переводов во всех режимах
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.cardNumberHash in :cardNumberHashes order by c.id")
+    List<Card> findByCardNumberHashInForUpdate(@Param("cardNumberHashes") Collection<String> cardNumberHashes);
+
+    // SELECT ... FOR UPDATE; вызывающий код обязан брать блокировки в порядке возрастания id
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :cardId")
+    Optional<Card> findByIdForUpdate(@Param("cardId") Long cardId);
 
 
     List<Card> findByUserIdAndStatus(Long userId, CardStatus status);
@@ -21,4 +53,69 @@ public interface CardRepository extends JpaRepository<Card, Long> {
 
 
     Optional<Card> findByIdAndUserId(Long cardId, Long userId);
+
+    // 0 изменённых строк значит, что карта чужая, неактивна или (для списания) денег мало.
+    // Строка блокируется самим UPDATE, поэтому вызывающий код обязан вызывать их по возрастанию id
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance - :amount, version = version + 1 "
+            + "WHERE id = :cardId AND user_id = :userId AND status = 'ACTIVE' AND balance >= :amount",
+            nativeQuery = true)
+    int debit(@Param("cardId") Long cardId, @Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance + :amount, version = version + 1 "
+            + "WHERE id = :cardId AND user_id = :userId AND status = 'ACTIVE'",
+            nativeQuery = true)
+    int credit(@Param("cardId") Long cardId, @Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    // одна пачка просроченных карт одним UPDATE; возвращает число переведённых в EXPIRED.
+    // SKIP LOCKED пропускает строки, которые сейчас держит перевод или тот же проход на другом узле, —
+    // они достанутся следующему запуску. version растёт, чтобы OPTIMISTIC-перевод не записал старый статус
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE cards SET status = 'EXPIRED', version = version + 1 WHERE id IN ("
+            + "SELECT id FROM cards WHERE status = 'ACTIVE' AND expiry_date < current_date "
+            + "LIMIT :limit FOR UPDATE SKIP LOCKED)",
+            nativeQuery = true)
+    int expireOverdue(@Param("limit") int limit);
+
+    @Query(value = CARD_SUMMARY_SELECT, countQuery = "select count(c) from Card c")
+    Page<CardSummary> findAllSummaries(Pageable pageable);
+
+    @Query(value = CARD_SUMMARY_SELECT + " where c.user.id = :userId",
+            countQuery = "select count(c) from Card c where c.user.id = :userId")
+    Page<CardSummary> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(CARD_SUMMARY_SELECT + " where c.id > :afterId order by c.id")
+    List<CardSummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(CARD_SUMMARY_SELECT + " where c.user.id = :userId and c.id > :afterId order by c.id")
+    List<CardSummary> findSummariesByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Limit limit);
+
+    // число карт сразу для всей страницы пользователей одним запросом; у кого карт нет, в ответе отсутствуют
+    @Query("select c.user.id as userId, count(c) as cardCount from Card c where c.user.id in :userIds group by c.user.id")
+    List<UserCardCount> countByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    // проверка уникальности сразу для пачки загружаемых карт по слепому индексу. Один параметр-массив
+    // вместо IN на тысячу параметров: текст запроса не зависит от размера пачки, а соединение с unnest
+    // и в общем (generic) плане подготовленного запроса идёт по индексу, а не полным просмотром cards
+    @Query(value = "select c.card_number_hash from unnest(cast(:hashes as varchar[])) h(hash) "
+            + "join cards c on c.card_number_hash = h.hash", nativeQuery = true)
+    List<String> findExistingCardNumberHashes(@Param("hashes") String[] hashes);
+
+    // однопроходное чтение всей таблицы курсором PostgreSQL: драйвер подкачивает строки пачками
+    // по fetch size, а не выбирает результат целиком. Вызывать только внутри транзакции
+    // (при autocommit драйвер fetch size игнорирует) и закрывать поток после чтения
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(CARD_SUMMARY_SELECT + " order by c.id")
+    Stream<CardSummary> streamAllSummaries();
+
+    @Query(CARD_SUMMARY_SELECT + " where c.id = :cardId")
+    Optional<CardSummary> findSummaryById(@Param("cardId") Long cardId);
+
+    @Query(CARD_SUMMARY_SELECT + " where c.id = :cardId and c.user.id = :userId")
+    Optional<CardSummary> findSummaryByIdAndUserId(@Param("cardId") Long cardId, @Param("userId") Long userId);
 }
\ No newline at end of file
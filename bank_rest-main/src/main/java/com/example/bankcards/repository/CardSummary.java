@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// read-only проекция под CardResponse: выбирается одним запросом, сущности Card/User не гидрируются
+public interface CardSummary {
+    Long getId();
+    String getCardLastFour();
+    String getCardholderName();
+    LocalDate getExpiryDate();
+    CardStatus getStatus();
+    BigDecimal getBalance();
+    Long getUserId();
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.repository;
+
+// число карт пользователя из группирующего запроса
+public interface UserCardCount {
+    Long getUserId();
+    Long getCardCount();
+}
@@ -1,11 +1,44 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    String USER_SUMMARY_SELECT = "select u.id as id, u.username as username, u.role as role, "
+            + "u.cardHolderName as cardHolderName from User u";
+
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
+
+    @Query("select u.id from User u where u.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Optional<Long> findTokenVersionById(@Param("id") Long id);
+
+    @Query(value = USER_SUMMARY_SELECT, countQuery = "select count(u) from User u")
+    Page<UserSummary> findAllSummaries(Pageable pageable);
+
+    @Query(USER_SUMMARY_SELECT + " where u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+    @Query(USER_SUMMARY_SELECT + " where u.id > :afterId order by u.id")
+    List<UserSummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
 }
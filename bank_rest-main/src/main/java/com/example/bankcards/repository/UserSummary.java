@@ -0,0 +1,11 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.security.Role;
+
+// read-only проекция под UserResponse: без пароля и без ленивой коллекции cards
+public interface UserSummary {
+    Long getId();
+    String getUsername();
+    Role getRole();
+    String getCardHolderName();
+}
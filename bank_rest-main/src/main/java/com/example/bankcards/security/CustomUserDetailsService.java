@@ -2,34 +2,73 @@ package com.example.bankcards.security;
 
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.util.Collections;
 
 @Service
 
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    // UserPrincipal неизменяем и не реализует CredentialsContainer, поэтому ProviderManager
+    // не затирает пароль у закешированного объекта и его можно отдавать всем вызывающим
+    private final Cache<String, UserPrincipal> cache;
 
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, MeterRegistry meterRegistry,
+                                    @Value("${security.user-details-cache.max-size:10000}") long maxSize,
+                                    @Value("${security.user-details-cache.ttl-seconds:300}") long ttlSeconds) {
         this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return cache.get(username, this::loadUser);
+    }
+
+    private UserPrincipal loadUser(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("юзер не найден: " + username));
 
-        return new org.springframework.security.core.userdetails.User(
+        return new UserPrincipal(
+                user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                Collections.singletonList(user.getRole())
+                Collections.singletonList(user.getRole()),
+                user.getTokenVersion()
         );
 
     }
+
+    // перехеширование при входе: тот же пароль, новый формат или стоимость. Версию токенов не меняем
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        UserPrincipal principal = (UserPrincipal) user;
+        UserPrincipal updated = new UserPrincipal(principal.getId(), principal.getUsername(), newPassword,
+                principal.getAuthorities(), principal.getTokenVersion());
+        cache.put(updated.getUsername(), updated);
+        return updated;
+    }
+
+    // срабатывает после коммита изменения; без транзакции — сразу
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSecurityChanged(UserSecurityChangedEvent event) {
+        cache.invalidate(event.username());
+    }
 }
@@ -0,0 +1,58 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+// ES256 (ECDSA P-256): подписывает только узел с закрытым ключом, проверить может любой узел с открытым.
+// Ключи принимаются в PEM или голым base64: закрытый — PKCS#8, открытый — X.509 SubjectPublicKeyInfo
+public class EcdsaTokenSigner implements TokenSigner {
+
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+
+    public EcdsaTokenSigner(String privateKey, String publicKey) {
+        if (publicKey == null || publicKey.isBlank()) {
+            throw new IllegalArgumentException("Для ES256 нужен открытый ключ jwt.ec.public-key");
+        }
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            this.publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(decodePem(publicKey)));
+            this.privateKey = privateKey == null || privateKey.isBlank()
+                    ? null
+                    : keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decodePem(privateKey)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный ключ ES256", e);
+        }
+    }
+
+    @Override
+    public SignatureAlgorithm algorithm() {
+        return SignatureAlgorithm.ES256;
+    }
+
+    @Override
+    public Key signingKey() {
+        if (privateKey == null) {
+            throw new IllegalStateException("Закрытый ключ jwt.ec.private-key не задан: узел может только проверять токены");
+        }
+        return privateKey;
+    }
+
+    @Override
+    public Key verificationKey() {
+        return publicKey;
+    }
+
+    private static byte[] decodePem(String pem) {
+        String base64 = pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
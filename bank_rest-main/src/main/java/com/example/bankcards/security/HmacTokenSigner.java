@@ -0,0 +1,35 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+
+// HS256: один общий секрет и подписывает, и проверяет
+public class HmacTokenSigner implements TokenSigner {
+
+    private final Key key;
+
+    public HmacTokenSigner(String secret) {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalArgumentException("Секрет JWT должен быть длиной не менее 32 символов");
+        }
+        this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public SignatureAlgorithm algorithm() {
+        return SignatureAlgorithm.HS256;
+    }
+
+    @Override
+    public Key signingKey() {
+        return key;
+    }
+
+    @Override
+    public Key verificationKey() {
+        return key;
+    }
+}
@@ -1,38 +1,36 @@
 package com.example.bankcards.security;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
-import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
-import java.security.Key;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
+// единственный сервис токенов: выпускает их при входе и проверяет в фильтре по одной схеме claims
 @Component
-@RequiredArgsConstructor
 public class JwtTokenProvider {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
 
     @Value("${jwt.expiration}")
     private long expirationMillis;
 
-    private Key key;
+    private final TokenSigner tokenSigner;
+    private final JwtParser jwtParser;
+    private final VerifiedClaimsCache verifiedClaimsCache;
 
-    @PostConstruct
-    public void init() {
-        System.out.println("JWT: " + secret); //!!!убрать потом
-        if (secret == null || secret.length() < 32) {
-            throw new IllegalArgumentException("Секрет JWT должен быть длиной не менее 32 символов");
-        }
-        this.key = Keys.hmacShaKeyFor(secret.getBytes());
+    public JwtTokenProvider(TokenSigner tokenSigner, JwtParser jwtParser, VerifiedClaimsCache verifiedClaimsCache) {
+        this.tokenSigner = tokenSigner;
+        this.jwtParser = jwtParser;
+        this.verifiedClaimsCache = verifiedClaimsCache;
     }
 
     public long getExpirationMillis() {
@@ -43,23 +41,9 @@ public class JwtTokenProvider {
         this.expirationMillis = expirationMillis;
     }
 
-    public Key getKey() {
-        return key;
-    }
-
-    public void setKey(Key key) {
-        this.key = key;
-    }
-
-    public String getSecret() {
-        return secret;
-    }
-
-    public void setSecret(String secret) {
-        this.secret = secret;
-    }
-
-    public String generateToken(UserDetails userDetails) {
+    // uid и ver позволяют фильтру аутентифицировать запрос по одному токену, без чтения users;
+    // jti — идентификатор для отзыва одного токена через TokenRevocationList
+    public String generateToken(UserDetails userDetails, Long userId, Long tokenVersion) {
         Date now = new Date();
         Date expiry = new Date(now.getTime() + expirationMillis);
 
@@ -68,11 +52,14 @@ public class JwtTokenProvider {
                 .toList();
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userDetails.getUsername())
-                .claim("roles", roles)
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_USER_ID, userId)
+                .claim(CLAIM_TOKEN_VERSION, tokenVersion)
                 .setIssuedAt(now)
                 .setExpiration(expiry)
-                .signWith(key, SignatureAlgorithm.HS256)
+                .signWith(tokenSigner.signingKey(), tokenSigner.algorithm())
                 .compact();
     }
 
@@ -82,25 +69,36 @@ public class JwtTokenProvider {
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        String username = extractUsername(token);
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+        return isTokenValid(parseClaims(token), userDetails);
     }
 
-    private boolean isTokenExpired(String token) {
-        return parseClaims(token).getExpiration().before(new Date());
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims);
     }
 
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
+    }
+
+    // подпись проверяется один раз на токен: повторные запросы с тем же токеном берут claims из кеша
     private Claims parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return verifiedClaimsCache.get(token, t -> jwtParser.parseClaimsJws(t).getBody());
+    }
+
+    // проверяет подпись и срок действия; бросает JwtException, если токен недействителен.
+    // Фильтр вызывает его один раз на запрос и дальше работает с полученными claims
+    public Claims extractClaims(String token) {
+        return parseClaims(token);
     }
 
     public List<GrantedAuthority> extractAuthorities(String token) {
-        Claims claims = parseClaims(token);
-        Object rolesObject = claims.get("roles");
+        return extractAuthorities(parseClaims(token));
+    }
+
+    // роли выпускаются списком; строку через запятую выдавал прежний JwtUtil, такие токены
+    // ещё действуют до истечения срока, поэтому принимаем оба вида
+    public List<GrantedAuthority> extractAuthorities(Claims claims) {
+        Object rolesObject = claims.get(CLAIM_ROLES);
 
         if (rolesObject instanceof List<?> rolesList) {
             return rolesList.stream()
@@ -109,6 +107,13 @@ public class JwtTokenProvider {
                     .map(authority -> (GrantedAuthority) authority)
                     .toList();
         }
+        if (rolesObject instanceof String rolesString && !rolesString.isBlank()) {
+            return Arrays.stream(rolesString.split(","))
+                    .map(String::trim)
+                    .filter(role -> !role.isEmpty())
+                    .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+                    .toList();
+        }
 
         return List.of();
     }
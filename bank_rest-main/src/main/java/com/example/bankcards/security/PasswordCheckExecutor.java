@@ -0,0 +1,51 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// проверка BCrypt при входе занимает десятки миллисекунд CPU. Она идёт на отдельном ограниченном пуле,
+// а не на потоках Tomcat, поэтому наплыв входов не вытесняет обычные запросы к картам. Когда очередь полна,
+// вход сразу получает 503 вместо того, чтобы копиться в ожидании.
+// Намеренно не Executor-бин: иначе Spring Boot не создаст свой applicationTaskExecutor
+@Component
+public class PasswordCheckExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public PasswordCheckExecutor(@Value("${security.login.threads:0}") int threads,
+                                 @Value("${security.login.queue-capacity:100}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "login-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Слишком много одновременных входов, повторите попытку позже.");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
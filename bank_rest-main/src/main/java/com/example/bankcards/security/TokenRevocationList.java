@@ -0,0 +1,189 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// список отзыва access-токенов до истечения их срока. Сам список лежит в revoked_tokens, а в памяти узла:
+//  - фильтр Блума по jti отозванных токенов: неотозванный токен (почти все запросы) отсекается
+//    без запроса в базу, и только при срабатывании фильтра отзыв проверяется в таблице;
+//  - для каждого пользователя с отзывом по версии — версия, ниже которой его токены недействительны.
+//    Таких записей мало, они хранятся точно, и токен с текущей версией в базу не ходит вовсе.
+// Новые записи с других узлов подтягиваются опросом раз в jwt.revocation.poll-interval-millis
+@Component
+public class TokenRevocationList {
+
+    // запись об удалённом пользователе отзывает токены любой версии
+    private static final long ALL_VERSIONS = Long.MAX_VALUE;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Duration tokenLifetime;
+    private final Duration pollOverlap;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+    // отзывы, уже подтверждённые базой: повторные запросы с отозванным токеном в базу не ходят.
+    // Кешируется только "отозван" — отрицательный ответ может устареть со следующей записью
+    private final Cache<String, Boolean> confirmedRevocations;
+
+    private volatile BloomFilter filter;
+    private volatile Map<Long, Long> revokedBelowVersion = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastPolledAt;
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository,
+                               @Value("${jwt.expiration}") long tokenLifetimeMillis,
+                               @Value("${jwt.revocation.poll-overlap-millis:30000}") long pollOverlapMillis,
+                               @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries,
+                               @Value("${jwt.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.tokenLifetime = Duration.ofMillis(tokenLifetimeMillis);
+        this.pollOverlap = Duration.ofMillis(pollOverlapMillis);
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.confirmedRevocations = Caffeine.newBuilder()
+                .maximumSize(expectedEntries)
+                .expireAfterWrite(tokenLifetime)
+                .build();
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isRevoked(Claims claims) {
+        String jti = claims.getId();
+        if (jti != null && filter.mightContain(jti) && confirmJti(jti)) {
+            return true;
+        }
+
+        Long userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Long.class);
+        Long revokedBelow = userId == null ? null : revokedBelowVersion.get(userId);
+        if (revokedBelow == null) {
+            return false;
+        }
+        Long claimedVersion = claims.get(JwtTokenProvider.CLAIM_TOKEN_VERSION, Long.class);
+        // токены без ver выпускались до появления версий, т.е. с версией 0
+        long tokenVersion = claimedVersion == null ? 0L : claimedVersion;
+        return tokenVersion < revokedBelow;
+    }
+
+    // отзыв одного токена (выход); запись хранится до истечения срока самого токена
+    @Transactional
+    public void revoke(Claims claims) {
+        String jti = claims.getId();
+        Long userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Long.class);
+        if (jti == null || userId == null) {
+            throw new BadRequestException("Токен выпущен без идентификатора и не может быть отозван, войдите заново");
+        }
+        if (!revokedTokenRepository.existsByJti(jti)) {
+            LocalDateTime expiresAt = LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault());
+            revokedTokenRepository.save(newRevocation(jti, userId, null, expiresAt));
+        }
+        filter.put(jti);
+        confirmedRevocations.put(jti, Boolean.TRUE);
+    }
+
+    // смена роли, пароля или удаление: запись пишется в той же транзакции, что и само изменение,
+    // и отзывает все ранее выданные токены пользователя — в том числе на узлах, которые ещё
+    // не перечитали версию токенов. Хранится jwt.expiration: выданные до неё токены к этому времени истекут
+    @EventListener
+    public void onUserSecurityChanged(UserSecurityChangedEvent event) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(tokenLifetime);
+        revokedTokenRepository.save(newRevocation(null, event.userId(), revokedBelow(event), expiresAt));
+    }
+
+    // в память — только после коммита: при откате отзыва нет, и токены текущей версии должны работать
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSecurityChangeCommitted(UserSecurityChangedEvent event) {
+        revokedBelowVersion.merge(event.userId(), revokedBelow(event), Math::max);
+    }
+
+    // догрузка записей с других узлов; окно перекрытия покрывает транзакции, закоммиченные
+    // позже своего revoked_at, и расхождение часов между узлами — повторное добавление ключа безвредно
+    @Scheduled(fixedDelayString = "${jwt.revocation.poll-interval-millis:5000}")
+    public void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        BloomFilter current = filter;
+        Map<Long, Long> currentRevokedBelow = revokedBelowVersion;
+        for (RevokedToken revokedToken : revokedTokenRepository.findActiveRevokedSince(lastPolledAt.minus(pollOverlap), now)) {
+            add(revokedToken, current, currentRevokedBelow);
+        }
+        lastPolledAt = now;
+        if (current.isSaturated()) {
+            rebuild();
+        }
+    }
+
+    // из фильтра Блума ключи не удаляются, поэтому после чистки истёкших записей он строится заново.
+    // Истёкший отзыв по версии до пересборки безвреден: токены, выданные до него, к этому времени тоже истекли
+    @Scheduled(cron = "${jwt.revocation.purge-cron:0 30 * * * *}")
+    public void purgeExpired() {
+        revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        rebuild();
+    }
+
+    private void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        List<RevokedToken> active = revokedTokenRepository.findActive(now);
+        BloomFilter rebuilt = BloomFilter.create(Math.max(expectedEntries, active.size() * 2), falsePositiveRate);
+        Map<Long, Long> rebuiltRevokedBelow = new ConcurrentHashMap<>();
+        for (RevokedToken revokedToken : active) {
+            add(revokedToken, rebuilt, rebuiltRevokedBelow);
+        }
+        filter = rebuilt;
+        revokedBelowVersion = rebuiltRevokedBelow;
+        lastPolledAt = now;
+    }
+
+    private boolean confirmJti(String jti) {
+        if (confirmedRevocations.getIfPresent(jti) != null) {
+            return true;
+        }
+        boolean revoked = revokedTokenRepository.existsByJti(jti);
+        if (revoked) {
+            confirmedRevocations.put(jti, Boolean.TRUE);
+        }
+        return revoked;
+    }
+
+    private static void add(RevokedToken revokedToken, BloomFilter filter, Map<Long, Long> revokedBelow) {
+        if (revokedToken.getJti() != null) {
+            filter.put(revokedToken.getJti());
+        } else if (revokedToken.getTokenVersion() != null) {
+            revokedBelow.merge(revokedToken.getUserId(), revokedToken.getTokenVersion(), Math::max);
+        }
+    }
+
+    // токены с версией ниже новой текущей отзываются; удаление отзывает любую версию
+    private static long revokedBelow(UserSecurityChangedEvent event) {
+        return event.isDeleted() ? ALL_VERSIONS : event.tokenVersion();
+    }
+
+    private static RevokedToken newRevocation(String jti, Long userId, Long tokenVersion, LocalDateTime expiresAt) {
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setJti(jti);
+        revokedToken.setUserId(userId);
+        revokedToken.setTokenVersion(tokenVersion);
+        revokedToken.setExpiresAt(expiresAt);
+        revokedToken.setRevokedAt(LocalDateTime.now());
+        return revokedToken;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+import java.security.Key;
+
+// алгоритм и ключи подписи токенов. Для асимметричных алгоритмов узлу, который только проверяет токены,
+// достаточно открытого ключа: signingKey() у него бросает IllegalStateException
+public interface TokenSigner {
+
+    SignatureAlgorithm algorithm();
+
+    Key signingKey();
+
+    Key verificationKey();
+}
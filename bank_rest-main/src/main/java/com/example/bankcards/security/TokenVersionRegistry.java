@@ -0,0 +1,53 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+// текущая версия токенов каждого пользователя в памяти узла. Токен со старой версией
+// отклоняется без запроса в users; смена роли, пароля или удаление пользователя поднимает версию.
+// Изменения с других узлов видны не позже чем через jwt.token-version-ttl-seconds
+@Component
+public class TokenVersionRegistry {
+
+    // пользователь удалён: ни одна версия токена не подходит. Больше любой настоящей версии,
+    // поэтому при слиянии по максимуму удаление не перетирается устаревшим чтением
+    private static final long REVOKED = Long.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final Cache<Long, Long> versions;
+
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${jwt.token-version-ttl-seconds:60}") long ttlSeconds,
+                                @Value("${jwt.token-version-cache-size:100000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    // запрос в базу идёт вне блокировок кеша: загрузка внутри compute держала бы монитор сегмента
+    // на время обращения к базе (и закрепляла бы несущий поток виртуального потока).
+    // Версия только растёт, поэтому параллельные загрузки и события сливаются по максимуму
+    public boolean isCurrent(Long userId, long tokenVersion) {
+        Long version = versions.getIfPresent(userId);
+        if (version == null) {
+            long loaded = userRepository.findTokenVersionById(userId).orElse(REVOKED);
+            version = versions.asMap().merge(userId, loaded, Math::max);
+        }
+        return version == tokenVersion;
+    }
+
+    // при откате транзакции версия в базе не меняется, поэтому кеш обновляется только после коммита
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSecurityChanged(UserSecurityChangedEvent event) {
+        long version = event.isDeleted() ? REVOKED : event.tokenVersion();
+        versions.asMap().merge(event.userId(), version, Math::max);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+
+// принципал с id пользователя: собирается из подписанных claims токена либо из строки users при входе,
+// так что id берётся прямо из него, без повторного запроса в users
+public class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
+    private final long tokenVersion;
+
+    public UserPrincipal(Long id, String username, Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
+        this(id, username, null, authorities, tokenVersion);
+    }
+
+    public UserPrincipal(Long id, String username, String password, Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.authorities = authorities;
+        this.tokenVersion = tokenVersion;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // хеш пароля есть только у принципала из базы; в токене пароль не передаётся
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
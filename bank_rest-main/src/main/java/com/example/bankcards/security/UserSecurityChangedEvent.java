@@ -0,0 +1,10 @@
+package com.example.bankcards.security;
+
+// публикуется, когда выданные пользователю токены и закешированные данные для входа устарели:
+// смена роли или пароля (tokenVersion — новая версия) либо удаление пользователя (tokenVersion == null)
+public record UserSecurityChangedEvent(Long userId, String username, Long tokenVersion) {
+
+    public boolean isDeleted() {
+        return tokenVersion == null;
+    }
+}
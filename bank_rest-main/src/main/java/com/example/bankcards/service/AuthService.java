@@ -2,47 +2,67 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.RefreshTokenRequest;
 import com.example.bankcards.dto.UserCreateRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BadRequestException;
 import com.example.bankcards.exception.UnauthorizedException;
 import com.example.bankcards.repository.UserRepository;
-import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.security.JwtTokenProvider;
 import com.example.bankcards.security.Role;
-import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.PasswordCheckExecutor;
+import com.example.bankcards.security.TokenRevocationList;
+import com.example.bankcards.security.UserPrincipal;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class AuthService {
 
     private final AuthenticationManager authenticationManager;
-    private final CustomUserDetailsService userDetailsService;
-    private final JwtUtil jwtUtil;
+    private final JwtTokenProvider jwtTokenProvider;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordCheckExecutor passwordCheckExecutor;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
 
     public AuthService(AuthenticationManager authenticationManager,
-                       CustomUserDetailsService userDetailsService,
-                       JwtUtil jwtUtil,
+                       JwtTokenProvider jwtTokenProvider,
                        UserRepository userRepository,
-                       PasswordEncoder passwordEncoder) {
+                       PasswordEncoder passwordEncoder,
+                       PasswordCheckExecutor passwordCheckExecutor,
+                       RefreshTokenService refreshTokenService,
+                       TokenRevocationList tokenRevocationList) {
         this.authenticationManager = authenticationManager;
-        this.userDetailsService = userDetailsService;
-        this.jwtUtil = jwtUtil;
+        this.jwtTokenProvider = jwtTokenProvider;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.passwordCheckExecutor = passwordCheckExecutor;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationList = tokenRevocationList;
+    }
+
+    // BCrypt выполняется на пуле PasswordCheckExecutor; при переполненной очереди — сразу 503
+    public CompletableFuture<AuthResponse> createAuthenticationTokenAsync(AuthRequest authRequest) {
+        return passwordCheckExecutor.submit(() -> createAuthenticationToken(authRequest));
     }
 
+    // пользователь читается один раз — внутри authenticate; id, версия токенов и роль берутся из его принципала
     public AuthResponse createAuthenticationToken(AuthRequest authRequest) {
+        Authentication authentication;
         try {
-            authenticationManager.authenticate(
+            authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(authRequest.getUsername(), authRequest.getPassword())
             );
         } catch (DisabledException e) {
@@ -51,14 +71,38 @@ public class AuthService {
             throw new UnauthorizedException("неправильный пароль или username.");
         }
 
-        final UserDetails userDetails = userDetailsService.loadUserByUsername(authRequest.getUsername());
-        final String jwt = jwtUtil.generateToken(userDetails);
+        final UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        final String jwt = jwtTokenProvider.generateToken(principal, principal.getId(), principal.getTokenVersion());
+        final String refreshToken = refreshTokenService.issue(principal.getId(), principal.getTokenVersion());
+
+        String role = principal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .findFirst()
+                .orElse(null);
+        return new AuthResponse(jwt, principal.getUsername(), role, refreshToken);
+    }
+
+    // продление без пароля: refresh-токен одноразовый, в ответе — новая пара токенов
+    public AuthResponse refreshAuthenticationToken(RefreshTokenRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+        User user = rotation.user();
 
-        User user = userRepository.findByUsername(authRequest.getUsername())
-                .orElseThrow(() -> new UnauthorizedException("не найден после авторизации"));
+        UserPrincipal principal = new UserPrincipal(user.getId(), user.getUsername(),
+                Collections.singletonList(user.getRole()), user.getTokenVersion());
+        final String jwt = jwtTokenProvider.generateToken(principal, user.getId(), user.getTokenVersion());
 
-        return new AuthResponse(jwt, userDetails.getUsername(), user.getRole().name());
+        return new AuthResponse(jwt, user.getUsername(), user.getRole().name(), rotation.refreshToken());
     }
+
+    // access-токен отзывается до истечения срока; refresh-токен, если передан, — вместе со своей цепочкой
+    @Transactional
+    public void logout(String accessToken, Long userId, String refreshToken) {
+        tokenRevocationList.revoke(jwtTokenProvider.extractClaims(accessToken));
+        if (refreshToken != null) {
+            refreshTokenService.revokeFamily(refreshToken, userId);
+        }
+    }
+
     @Transactional
     public User registerUser(UserCreateRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
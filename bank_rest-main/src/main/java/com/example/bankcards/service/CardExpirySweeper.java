@@ -0,0 +1,32 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// переводит просроченные карты в EXPIRED пачками по batch-size строк, каждая пачка — своя короткая
+// транзакция, поэтому в конце месяца нет ни обхода сущностей по одной, ни долгих блокировок.
+// Запуск на нескольких узлах сразу безопасен: пачки разных узлов не пересекаются за счёт SKIP LOCKED
+@Component
+public class CardExpirySweeper {
+
+    private final CardRepository cardRepository;
+    private final int batchSize;
+
+    public CardExpirySweeper(CardRepository cardRepository,
+                             @Value("${card.expiry.batch-size:1000}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // неполная пачка значит, что свободных просроченных карт не осталось; пропущенные из-за блокировок
+    // строки заберёт следующий запуск
+    @Scheduled(cron = "${card.expiry.sweep-cron:0 5 * * * *}")
+    public void sweep() {
+        int updated;
+        do {
+            updated = cardRepository.expireOverdue(batchSize);
+        } while (updated == batchSize);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.util.CsvUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// выгрузка всех карт (номера маскированы) прямо в поток ответа: строки пишутся по мере чтения
+// курсором из базы, ни список карт, ни весь документ в памяти не собираются
+@Service
+public class CardExportService {
+
+    private static final String CSV_HEADER = "id,maskedCardNumber,cardholderName,expiryDate,status,balance,userId";
+
+    private final CardService cardService;
+    // без сброса после каждой записи: в ответ уходят полные буферы генератора, а не по строке
+    private final ObjectWriter cardWriter;
+    private final ObjectMapper objectMapper;
+
+    public CardExportService(CardService cardService, ObjectMapper objectMapper) {
+        this.cardService = cardService;
+        this.objectMapper = objectMapper;
+        this.cardWriter = objectMapper.writerFor(CardResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void export(CardFileFormat format, OutputStream outputStream) throws IOException {
+        switch (format) {
+            case NDJSON -> exportNdjson(outputStream);
+            case CSV -> exportCsv(outputStream);
+        }
+    }
+
+    private void exportNdjson(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            cardService.forEachCard(card -> {
+                try {
+                    cardWriter.writeValue(generator, card);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private void exportCsv(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        cardService.forEachCard(card -> {
+            try {
+                writer.write(String.valueOf(card.getId()));
+                writer.write(',');
+                writer.write(card.getMaskedCardNumber());
+                writer.write(',');
+                writer.write(CsvUtil.escape(card.getCardholderName()));
+                writer.write(',');
+                writer.write(String.valueOf(card.getExpiryDate()));
+                writer.write(',');
+                writer.write(String.valueOf(card.getStatus()));
+                writer.write(',');
+                writer.write(card.getBalance().toPlainString());
+                writer.write(',');
+                writer.write(String.valueOf(card.getUserId()));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.BadRequestException;
+
+import java.util.Locale;
+
+// формат файла выгрузки и массовой загрузки карт
+public enum CardFileFormat {
+    // одна карта — один JSON-объект на строке
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String fileExtension;
+
+    CardFileFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    // параметр запроса без учёта регистра: ?format=csv и ?format=CSV
+    public static CardFileFormat fromParameter(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Неподдерживаемый формат файла: " + value + " (ndjson или csv)");
+        }
+    }
+
+    // по Content-Type загружаемого файла; параметры вроде charset не учитываются
+    public static CardFileFormat fromContentType(String contentType) {
+        if (contentType != null) {
+            String mediaType = contentType.split(";", 2)[0].trim();
+            for (CardFileFormat format : values()) {
+                if (format.contentType.equalsIgnoreCase(mediaType)) {
+                    return format;
+                }
+            }
+        }
+        throw new BadRequestException("Неподдерживаемый Content-Type: " + contentType + " (application/x-ndjson или text/csv)");
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
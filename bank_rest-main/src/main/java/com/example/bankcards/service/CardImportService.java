@@ -0,0 +1,353 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardImportError;
+import com.example.bankcards.dto.CardImportResponse;
+import com.example.bankcards.dto.CardImportRow;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardNumberUtil;
+import com.example.bankcards.util.CsvUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// массовый выпуск карт из файла. Тело читается построчно и обрабатывается порциями по chunk-size строк:
+// разбор, валидация, HMAC и шифрование номера — параллельно на отдельном пуле, проверка владельцев
+// и уникальности — двумя запросами IN на порцию, вставка — пакетами JDBC мимо Hibernate.
+// Каждая порция фиксируется своей транзакцией: ошибка в строке не отменяет уже загруженные карты
+@Service
+public class CardImportService {
+
+    private static final List<String> CSV_COLUMNS = List.of("userId", "cardNumber", "cardholderName", "expiryDate", "initialBalance");
+
+    // ON CONFLICT ловит гонку с параллельным выпуском той же карты после предварительной проверки
+    private static final String INSERT_SQL = "INSERT INTO cards (id, card_number, card_number_hash, card_last4, cardholder_name, "
+            + "expiry_date, status, balance, user_id, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0) ON CONFLICT DO NOTHING";
+
+    // какие из зарезервированных id реально вставлены; строки, пропущенные ON CONFLICT, в ответ не попадут
+    private static final String INSERTED_IDS_SQL = "SELECT id FROM cards WHERE id = ANY(?)";
+
+    // один nextval резервирует блок из Card.ID_ALLOCATION_SIZE id, как пул-оптимизатор Hibernate
+    private static final String RESERVE_IDS_SQL = "SELECT nextval('" + Card.ID_SEQUENCE + "') FROM generate_series(1, ?)";
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final CardNumberUtil cardNumberUtil;
+    private final Validator validator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader rowReader;
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int chunkSize;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public CardImportService(CardRepository cardRepository,
+                             UserRepository userRepository,
+                             CardNumberUtil cardNumberUtil,
+                             Validator validator,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${card.import.threads:0}") int threads,
+                             @Value("${card.import.chunk-size:1000}") int chunkSize,
+                             @Value("${card.import.batch-size:500}") int batchSize,
+                             @Value("${card.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.cardNumberUtil = cardNumberUtil;
+        this.validator = validator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rowReader = objectMapper.readerFor(CardImportRow.class);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = Math.max(1, chunkSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxReportedErrors = Math.max(0, maxReportedErrors);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "card-import-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public CardImportResponse importCards(CardFileFormat format, InputStream inputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        ImportResult result = new ImportResult(maxReportedErrors);
+        long lineNumber = 0;
+
+        Map<String, Integer> csvColumns = null;
+        if (format == CardFileFormat.CSV) {
+            String header = reader.readLine();
+            lineNumber++;
+            csvColumns = parseCsvHeader(header);
+        }
+
+        List<SourceLine> chunk = new ArrayList<>(chunkSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(new SourceLine(lineNumber, line));
+            if (chunk.size() == chunkSize) {
+                importChunk(format, csvColumns, chunk, result);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(format, csvColumns, chunk, result);
+        }
+        return result.toResponse();
+    }
+
+    private Map<String, Integer> parseCsvHeader(String header) {
+        if (header == null) {
+            throw new BadRequestException("Пустой файл: ожидался заголовок CSV " + String.join(",", CSV_COLUMNS));
+        }
+        List<String> names = CsvUtil.parseLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+            throw new BadRequestException("Заголовок CSV должен содержать столбцы " + String.join(",", CSV_COLUMNS));
+        }
+        return columns;
+    }
+
+    private void importChunk(CardFileFormat format, Map<String, Integer> csvColumns, List<SourceLine> chunk, ImportResult result) {
+        List<PreparedCard> prepared = prepareInParallel(format, csvColumns, chunk);
+        List<CardImportError> errors = new ArrayList<>();
+        List<PreparedCard> valid = new ArrayList<>(prepared.size());
+
+        // дубликаты внутри порции; между порциями их поймает проверка по базе
+        Set<String> seenHashes = new HashSet<>();
+        for (PreparedCard card : prepared) {
+            if (card.error() != null) {
+                errors.add(new CardImportError(card.line(), card.error()));
+            } else if (!seenHashes.add(card.cardNumberHash())) {
+                errors.add(new CardImportError(card.line(), "Карта с таким номером уже есть в файле."));
+            } else {
+                valid.add(card);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            Set<Long> existingUsers = new HashSet<>(userRepository.findExistingIds(
+                    valid.stream().map(card -> card.row().getUserId()).collect(Collectors.toSet())));
+            Set<String> existingHashes = new HashSet<>(cardRepository.findExistingCardNumberHashes(seenHashes.toArray(String[]::new)));
+            List<PreparedCard> insertable = new ArrayList<>(valid.size());
+            for (PreparedCard card : valid) {
+                if (!existingUsers.contains(card.row().getUserId())) {
+                    errors.add(new CardImportError(card.line(), "Пользователь не найден по ID: " + card.row().getUserId()));
+                } else if (existingHashes.contains(card.cardNumberHash())) {
+                    errors.add(new CardImportError(card.line(), "Карта с таким номером уже существует."));
+                } else {
+                    insertable.add(card);
+                }
+            }
+            result.imported += insert(insertable, errors);
+        }
+
+        errors.sort(Comparator.comparingLong(CardImportError::getLine));
+        errors.forEach(result::addError);
+    }
+
+    // порция делится на срезы по числу потоков; порядок строк внутри порции сохраняется
+    private List<PreparedCard> prepareInParallel(CardFileFormat format, Map<String, Integer> csvColumns, List<SourceLine> chunk) {
+        int sliceSize = (chunk.size() + threads - 1) / threads;
+        List<CompletableFuture<List<PreparedCard>>> slices = new ArrayList<>();
+        for (int from = 0; from < chunk.size(); from += sliceSize) {
+            List<SourceLine> slice = chunk.subList(from, Math.min(from + sliceSize, chunk.size()));
+            slices.add(CompletableFuture.supplyAsync(
+                    () -> slice.stream().map(source -> prepare(format, csvColumns, source)).toList(), executor));
+        }
+        List<PreparedCard> prepared = new ArrayList<>(chunk.size());
+        slices.forEach(slice -> prepared.addAll(slice.join()));
+        return prepared;
+    }
+
+    private PreparedCard prepare(CardFileFormat format, Map<String, Integer> csvColumns, SourceLine source) {
+        CardImportRow row;
+        try {
+            row = format == CardFileFormat.CSV
+                    ? parseCsvRow(csvColumns, source.text())
+                    : rowReader.readValue(source.text());
+        } catch (JsonProcessingException e) {
+            // getMessage() цитирует исходный текст строки, а в нём номер карты
+            return PreparedCard.failed(source.line(), "Некорректная строка: " + e.getOriginalMessage());
+        } catch (RuntimeException e) {
+            return PreparedCard.failed(source.line(), "Некорректная строка: " + e.getMessage());
+        }
+        Set<ConstraintViolation<CardImportRow>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            return PreparedCard.failed(source.line(), violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        String cardNumber = row.getCardNumber();
+        return new PreparedCard(source.line(), row,
+                cardNumberUtil.hashCardNumber(cardNumber),
+                cardNumberUtil.encryptCardNumber(cardNumber),
+                null);
+    }
+
+    private CardImportRow parseCsvRow(Map<String, Integer> columns, String line) {
+        List<String> fields = CsvUtil.parseLine(line);
+        if (fields.size() != columns.size()) {
+            throw new BadRequestException("ожидалось полей: " + columns.size() + ", получено: " + fields.size());
+        }
+        CardImportRow row = new CardImportRow();
+        row.setUserId(parseOrNull(fields.get(columns.get("userId")), Long::valueOf));
+        row.setCardNumber(fields.get(columns.get("cardNumber")).trim());
+        row.setCardholderName(fields.get(columns.get("cardholderName")).trim());
+        row.setExpiryDate(parseOrNull(fields.get(columns.get("expiryDate")), LocalDate::parse));
+        row.setInitialBalance(parseOrNull(fields.get(columns.get("initialBalance")), BigDecimal::new));
+        return row;
+    }
+
+    // пустое поле остаётся null и дальше отсекается валидацией с обычным сообщением
+    private static <T> T parseOrNull(String value, Function<String, T> parser) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : parser.apply(trimmed);
+    }
+
+    // возвращает число вставленных строк; строки, не вставленные из-за конфликта, добавляются в errors.
+    // Счётчики batchUpdate для этого не годятся: с reWriteBatchedInserts драйвер отвечает SUCCESS_NO_INFO
+    // на каждую строку пакета. Поэтому после вставки в той же транзакции одним запросом по первичному
+    // ключу проверяется, какие из выданных строкам id появились в таблице
+    private int insert(List<PreparedCard> cards, List<CardImportError> errors) {
+        if (cards.isEmpty()) {
+            return 0;
+        }
+        Integer inserted = transactionTemplate.execute(status -> {
+            List<Long> ids = reserveIds(cards.size()).subList(0, cards.size());
+            jdbcTemplate.batchUpdate(INSERT_SQL, cards, batchSize, new CardParameterSetter(ids));
+            Set<Long> insertedIds = new HashSet<>(
+                    jdbcTemplate.queryForList(INSERTED_IDS_SQL, Long.class, (Object) ids.toArray(Long[]::new)));
+            for (int i = 0; i < cards.size(); i++) {
+                if (!insertedIds.contains(ids.get(i))) {
+                    errors.add(new CardImportError(cards.get(i).line(), "Карта с таким номером уже существует."));
+                }
+            }
+            return insertedIds.size();
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    private List<Long> reserveIds(int count) {
+        int blocks = (count + Card.ID_ALLOCATION_SIZE - 1) / Card.ID_ALLOCATION_SIZE;
+        List<Long> hiValues = jdbcTemplate.queryForList(RESERVE_IDS_SQL, Long.class, blocks);
+        List<Long> ids = new ArrayList<>(blocks * Card.ID_ALLOCATION_SIZE);
+        for (long hi : hiValues) {
+            for (long id = hi - Card.ID_ALLOCATION_SIZE + 1; id <= hi; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private record SourceLine(long line, String text) {
+    }
+
+    private record PreparedCard(long line, CardImportRow row, String cardNumberHash, String encryptedCardNumber, String error) {
+        static PreparedCard failed(long line, String error) {
+            return new PreparedCard(line, null, null, null, error);
+        }
+    }
+
+    private final class CardParameterSetter implements ParameterizedPreparedStatementSetter<PreparedCard> {
+
+        private final List<Long> ids;
+        private int next;
+
+        CardParameterSetter(List<Long> ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, PreparedCard card) throws SQLException {
+            CardImportRow row = card.row();
+            ps.setLong(1, ids.get(next++));
+            ps.setString(2, card.encryptedCardNumber());
+            ps.setString(3, card.cardNumberHash());
+            ps.setString(4, cardNumberUtil.lastFourDigits(row.getCardNumber()));
+            ps.setString(5, row.getCardholderName());
+            ps.setDate(6, Date.valueOf(row.getExpiryDate()));
+            ps.setString(7, CardStatus.ACTIVE.name());
+            ps.setBigDecimal(8, row.getInitialBalance());
+            ps.setLong(9, row.getUserId());
+        }
+    }
+
+    private static final class ImportResult {
+        private final int maxReportedErrors;
+        private final List<CardImportError> errors = new ArrayList<>();
+        private long imported;
+        private long failed;
+
+        ImportResult(int maxReportedErrors) {
+            this.maxReportedErrors = maxReportedErrors;
+        }
+
+        void addError(CardImportError error) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(error);
+            }
+        }
+
+        CardImportResponse toResponse() {
+            return new CardImportResponse(imported, failed, errors, failed > errors.size());
+        }
+    }
+}
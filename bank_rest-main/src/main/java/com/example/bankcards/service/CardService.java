@@ -1,38 +1,81 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferItemResponse;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CardCreateRequest;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.dto.CardUpdateRequest;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BadRequestException;
 import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardSummary;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardNumberUtil;
+import com.example.bankcards.util.CursorUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class CardService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardNumberUtil cardNumberUtil;
     private final UserService userService;
-
-    public CardService(CardRepository cardRepository, UserRepository userRepository, CardNumberUtil cardNumberUtil, UserService userService) {
+    private final TransferService transferService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferLockingMode transferLockingMode;
+    private final int transferMaxAttempts;
+    private final long transferBackoffMillis;
+    private final int transferBatchChunkSize;
+
+    public CardService(CardRepository cardRepository, UserRepository userRepository, CardNumberUtil cardNumberUtil, UserService userService,
+                       TransferService transferService, PlatformTransactionManager transactionManager,
+                       @Value("${card.transfer.locking-mode:ATOMIC}") TransferLockingMode transferLockingMode,
+                       @Value("${card.transfer.max-attempts:3}") int transferMaxAttempts,
+                       @Value("${card.transfer.backoff-millis:10}") long transferBackoffMillis,
+                       @Value("${card.transfer.batch-chunk-size:500}") int transferBatchChunkSize) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
         this.cardNumberUtil = cardNumberUtil;
         this.userService = userService;
+        this.transferService = transferService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transferLockingMode = transferLockingMode;
+        this.transferMaxAttempts = transferMaxAttempts;
+        this.transferBackoffMillis = transferBackoffMillis;
+        this.transferBatchChunkSize = transferBatchChunkSize;
     }
 
 
@@ -41,13 +84,15 @@ public class CardService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден по ID: " + userId));
 
-        String encryptedCardNumber = cardNumberUtil.encryptCardNumber(request.getCardNumber());
-        if (cardRepository.findByCardNumber(encryptedCardNumber).isPresent()) {
+        String cardNumberHash = cardNumberUtil.hashCardNumber(request.getCardNumber());
+        if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
             throw new BadRequestException("Карта с таким номером уже существует.");
         }
 
         Card card = new Card();
-        card.setCardNumber(encryptedCardNumber);
+        card.setCardNumber(cardNumberUtil.encryptCardNumber(request.getCardNumber()));
+        card.setCardNumberHash(cardNumberHash);
+        card.setCardLastFour(cardNumberUtil.lastFourDigits(request.getCardNumber()));
         card.setCardholderName(request.getCardholderName());
         card.setExpiryDate(request.getExpiryDate());
         card.setStatus(CardStatus.ACTIVE);
@@ -89,27 +134,54 @@ public class CardService {
         cardRepository.deleteById(cardId);
     }
 
+    @Transactional(readOnly = true)
     public Page<CardResponse> findAllCards(Pageable pageable) {
-        return cardRepository.findAll(pageable)
-                .map(this::mapCardToCardResponse);
+        return cardRepository.findAllSummaries(pageable)
+                .map(this::mapSummaryToCardResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<CardResponse> findAllCardsAfter(String after, int limit) {
+        checkCursorPageSize(limit);
+        List<CardSummary> cards = cardRepository.findSummariesAfter(CursorUtil.decode(after), Limit.of(limit + 1));
+        return toCursorPage(cards, limit);
     }
 
+    // каждая карта отдаётся потребителю сразу после чтения строки: память не зависит от размера таблицы.
+    // Потребитель пишет в ответ, поэтому транзакция открыта всё время выгрузки
+    @Transactional(readOnly = true)
+    public void forEachCard(Consumer<CardResponse> consumer) {
+        try (Stream<CardSummary> cards = cardRepository.streamAllSummaries()) {
+            cards.map(this::mapSummaryToCardResponse).forEach(consumer);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public CardResponse getCardById(Long cardId) {
-        Card card = cardRepository.findById(cardId)
+        CardSummary card = cardRepository.findSummaryById(cardId)
                 .orElseThrow(() -> new ResourceNotFoundException("Карта не найдена по ID: " + cardId));
-        return mapCardToCardResponse(card);
+        return mapSummaryToCardResponse(card);
     }
 
 
+    @Transactional(readOnly = true)
     public Page<CardResponse> getUserCards(Long userId, Pageable pageable) {
-        return cardRepository.findByUserId(userId, pageable)
-                .map(this::mapCardToCardResponse);
+        return cardRepository.findSummariesByUserId(userId, pageable)
+                .map(this::mapSummaryToCardResponse);
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<CardResponse> getUserCardsAfter(Long userId, String after, int limit) {
+        checkCursorPageSize(limit);
+        List<CardSummary> cards = cardRepository.findSummariesByUserIdAfter(userId, CursorUtil.decode(after), Limit.of(limit + 1));
+        return toCursorPage(cards, limit);
+    }
+
+    @Transactional(readOnly = true)
     public CardResponse getUserCardById(Long cardId, Long userId) {
-        Card card = cardRepository.findByIdAndUserId(cardId, userId)
+        CardSummary card = cardRepository.findSummaryByIdAndUserId(cardId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Карта не найдена по ID: " + cardId + " для пользователя: " + userId));
-        return mapCardToCardResponse(card);
+        return mapSummaryToCardResponse(card);
     }
 
     @Transactional
@@ -124,16 +196,236 @@ public class CardService {
         return mapCardToCardResponse(cardRepository.save(card));
     }
 
-    @Transactional
-    public void transferFunds(Long userId, TransferRequest request) {
-        String encryptedFromCardNumber = cardNumberUtil.encryptCardNumber(request.getFromCardNumber());
-        String encryptedToCardNumber = cardNumberUtil.encryptCardNumber(request.getToCardNumber());
+    public TransferResponse transferFunds(Long userId, TransferRequest request, String idempotencyKey) {
+        String fromCardNumberHash = cardNumberUtil.hashCardNumber(request.getFromCardNumber());
+        String toCardNumberHash = cardNumberUtil.hashCardNumber(request.getToCardNumber());
+        BigDecimal amount = request.getAmount();
+
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > 255) {
+                throw new BadRequestException("Idempotency-Key должен содержать от 1 до 255 символов.");
+            }
+            Optional<Transfer> previous = transferService.findByIdempotencyKey(userId, idempotencyKey);
+            if (previous.isPresent()) {
+                return replayTransfer(previous.get(), fromCardNumberHash, toCardNumberHash, amount);
+            }
+        }
+
+        try {
+            Transfer transfer = executeWithRetry(status -> {
+                TransferLegs legs = switch (transferLockingMode) {
+                    case ATOMIC -> transferFundsAtomic(userId, fromCardNumberHash, toCardNumberHash, amount);
+                    case OPTIMISTIC -> transferFundsOptimistic(userId, fromCardNumberHash, toCardNumberHash, amount);
+                    case PESSIMISTIC -> transferFundsLocked(userId, fromCardNumberHash, toCardNumberHash, amount);
+                };
+                return transferService.record(userId, legs.fromCardId(), legs.toCardId(), amount, idempotencyKey);
+            });
+            return transferService.mapTransferToTransferResponse(transfer);
+        } catch (DataIntegrityViolationException e) {
+            // параллельный повтор с тем же ключом успел закоммитить перевод раньше: наш откатился целиком
+            if (idempotencyKey == null) {
+                throw e;
+            }
+            Transfer previous = transferService.findByIdempotencyKey(userId, idempotencyKey).orElseThrow(() -> e);
+            return replayTransfer(previous, fromCardNumberHash, toCardNumberHash, amount);
+        }
+    }
+
+    // пакет режется на порции по transferBatchChunkSize, каждая порция — одна транзакция: один IN-запрос
+    // находит и блокирует все её карты по возрастанию id, переводы применяются по очереди в памяти,
+    // а балансы и записи журнала уходят в базу при коммите. Ошибка отдельного перевода не откатывает остальные
+    public BatchTransferResponse transferFundsBatch(Long userId, BatchTransferRequest request) {
+        List<TransferRequest> transfers = request.getTransfers();
+        List<BatchTransferItemResponse> results = new ArrayList<>(transfers.size());
+        for (int offset = 0; offset < transfers.size(); offset += transferBatchChunkSize) {
+            List<TransferRequest> chunk = transfers.subList(offset, Math.min(offset + transferBatchChunkSize, transfers.size()));
+            results.addAll(transferChunk(userId, chunk, offset));
+        }
+
+        int succeeded = (int) results.stream().filter(BatchTransferItemResponse::isSuccess).count();
+        return new BatchTransferResponse(succeeded, results.size() - succeeded, results);
+    }
+
+    private List<BatchTransferItemResponse> transferChunk(Long userId, List<TransferRequest> chunk, int offset) {
+        String[] fromCardNumberHashes = new String[chunk.size()];
+        String[] toCardNumberHashes = new String[chunk.size()];
+        Set<String> cardNumberHashes = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            fromCardNumberHashes[i] = cardNumberUtil.hashCardNumber(chunk.get(i).getFromCardNumber());
+            toCardNumberHashes[i] = cardNumberUtil.hashCardNumber(chunk.get(i).getToCardNumber());
+            cardNumberHashes.add(fromCardNumberHashes[i]);
+            cardNumberHashes.add(toCardNumberHashes[i]);
+        }
+
+        return executeWithRetry(status -> {
+            Map<String, Card> cards = new HashMap<>();
+            for (Card card : cardRepository.findByCardNumberHashInForUpdate(cardNumberHashes)) {
+                cards.put(card.getCardNumberHash(), card);
+            }
+
+            List<BatchTransferItemResponse> results = new ArrayList<>(chunk.size());
+            List<BatchTransferItemResponse> recorded = new ArrayList<>();
+            List<Transfer> ledger = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                BatchTransferItemResponse result = new BatchTransferItemResponse();
+                result.setIndex(offset + i);
+                results.add(result);
+
+                Card fromCard = cards.get(fromCardNumberHashes[i]);
+                Card toCard = cards.get(toCardNumberHashes[i]);
+                BigDecimal amount = chunk.get(i).getAmount();
+                try {
+                    if (fromCard == null) {
+                        throw new ResourceNotFoundException("Карта отправителя не найдена.");
+                    }
+                    if (toCard == null) {
+                        throw new ResourceNotFoundException("Карта получателя не найдена.");
+                    }
+                    moveFunds(userId, fromCard, toCard, amount);
+                } catch (BadRequestException | ResourceNotFoundException e) {
+                    result.setError(e.getMessage());
+                    continue;
+                }
+                result.setSuccess(true);
+                recorded.add(result);
+                ledger.add(transferService.newTransfer(userId, fromCard.getId(), toCard.getId(), amount, null));
+            }
+
+            List<Transfer> saved = transferService.recordAll(ledger);
+            for (int i = 0; i < saved.size(); i++) {
+                recorded.get(i).setTransfer(transferService.mapTransferToTransferResponse(saved.get(i)));
+            }
+            return results;
+        });
+    }
+
+    // транзакция открывается на каждую попытку: после дедлока, ошибки сериализации
+    // или конфликта версий её можно только откатить и повторить целиком
+    private <T> T executeWithRetry(TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= transferMaxAttempts) {
+                    throw e;
+                }
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    private TransferResponse replayTransfer(Transfer previous, String fromCardNumberHash, String toCardNumberHash, BigDecimal amount) {
+        boolean sameRequest = previous.getAmount().compareTo(amount) == 0
+                && cardRepository.findIdByCardNumberHash(fromCardNumberHash).filter(previous.getFromCardId()::equals).isPresent()
+                && cardRepository.findIdByCardNumberHash(toCardNumberHash).filter(previous.getToCardId()::equals).isPresent();
+        if (!sameRequest) {
+            throw new BadRequestException("Idempotency-Key уже использован для другого перевода.");
+        }
+        return transferService.mapTransferToTransferResponse(previous);
+    }
+
+    public Page<TransferResponse> getUserTransfers(Long userId, Pageable pageable) {
+        return transferService.getUserTransfers(userId, pageable);
+    }
+
+    // full jitter: случайная пауза в [0, base * 2^(attempt-1)], чтобы повторы конкурентов не совпадали
+    private void backOff(int attempt, ConcurrencyFailureException cause) {
+        long bound = transferBackoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    // строки блокируются самими UPDATE. Id карт находятся заранее без блокировки, и UPDATE идут
+    // по возрастанию id — в том же порядке, что в режиме PESSIMISTIC и в пакетных переводах,
+    // поэтому встречные переводы любых режимов не встают в дедлок
+    private TransferLegs transferFundsAtomic(Long userId, String fromCardNumberHash, String toCardNumberHash, BigDecimal amount) {
+        Long fromCardId = cardRepository.findIdByCardNumberHash(fromCardNumberHash)
+                .orElseThrow(() -> new ResourceNotFoundException("Карта отправителя не найдена."));
+        Long toCardId = cardRepository.findIdByCardNumberHash(toCardNumberHash)
+                .orElseThrow(() -> new ResourceNotFoundException("Карта получателя не найдена."));
+
+        boolean applied;
+        if (fromCardId <= toCardId) {
+            applied = cardRepository.debit(fromCardId, userId, amount) == 1
+                    && cardRepository.credit(toCardId, userId, amount) == 1;
+        } else {
+            applied = cardRepository.credit(toCardId, userId, amount) == 1
+                    && cardRepository.debit(fromCardId, userId, amount) == 1;
+        }
+        if (!applied) {
+            // транзакция откатится по исключению; читаем карты только чтобы вернуть понятную причину
+            Card fromCard = cardRepository.findById(fromCardId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Карта отправителя не найдена."));
+            Card toCard = cardRepository.findById(toCardId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Карта получателя не найдена."));
+            checkTransfer(userId, fromCard, toCard, amount);
+            throw new BadRequestException("Перевод не выполнен, повторите попытку.");
+        }
+        return new TransferLegs(fromCardId, toCardId);
+    }
 
-        Card fromCard = cardRepository.findByCardNumber(encryptedFromCardNumber)
+    // строки не блокируются до flush, но версионные UPDATE при flush тоже берут блокировки строк.
+    // Hibernate выполняет их в порядке загрузки сущностей, поэтому карты читаются по возрастанию id —
+    // в том же порядке, что и во всех остальных путях, иначе встречные переводы встают в дедлок
+    private TransferLegs transferFundsOptimistic(Long userId, String fromCardNumberHash, String toCardNumberHash, BigDecimal amount) {
+        Long fromCardId = cardRepository.findIdByCardNumberHash(fromCardNumberHash)
                 .orElseThrow(() -> new ResourceNotFoundException("Карта отправителя не найдена."));
-        Card toCard = cardRepository.findByCardNumber(encryptedToCardNumber)
+        Long toCardId = cardRepository.findIdByCardNumberHash(toCardNumberHash)
                 .orElseThrow(() -> new ResourceNotFoundException("Карта получателя не найдена."));
 
+        Card fromCard;
+        Card toCard;
+        if (fromCardId <= toCardId) {
+            fromCard = findCard(fromCardId);
+            toCard = findCard(toCardId);
+        } else {
+            toCard = findCard(toCardId);
+            fromCard = findCard(fromCardId);
+        }
+
+        return applyTransfer(userId, fromCard, toCard, amount);
+    }
+
+    private TransferLegs transferFundsLocked(Long userId, String fromCardNumberHash, String toCardNumberHash, BigDecimal amount) {
+        Long fromCardId = cardRepository.findIdByCardNumberHash(fromCardNumberHash)
+                .orElseThrow(() -> new ResourceNotFoundException("Карта отправителя не найдена."));
+        Long toCardId = cardRepository.findIdByCardNumberHash(toCardNumberHash)
+                .orElseThrow(() -> new ResourceNotFoundException("Карта получателя не найдена."));
+
+        // блокируем строки всегда по возрастанию id, иначе встречные переводы A->B и B->A взаимно блокируются
+        Card fromCard;
+        Card toCard;
+        if (fromCardId <= toCardId) {
+            fromCard = lockCard(fromCardId);
+            toCard = lockCard(toCardId);
+        } else {
+            toCard = lockCard(toCardId);
+            fromCard = lockCard(fromCardId);
+        }
+
+        return applyTransfer(userId, fromCard, toCard, amount);
+    }
+
+    private TransferLegs applyTransfer(Long userId, Card fromCard, Card toCard, BigDecimal amount) {
+        moveFunds(userId, fromCard, toCard, amount);
+
+        cardRepository.save(fromCard);
+        cardRepository.save(toCard);
+        return new TransferLegs(fromCard.getId(), toCard.getId());
+    }
+
+    private void moveFunds(Long userId, Card fromCard, Card toCard, BigDecimal amount) {
+        checkTransfer(userId, fromCard, toCard, amount);
+
+        fromCard.setBalance(fromCard.getBalance().subtract(amount));
+        toCard.setBalance(toCard.getBalance().add(amount));
+    }
+
+    private void checkTransfer(Long userId, Card fromCard, Card toCard, BigDecimal amount) {
         if (!fromCard.getUser().getId().equals(userId) || !toCard.getUser().getId().equals(userId)) {
             throw new BadRequestException("Обе карты должны принадлежать текущему пользователю для перевода.");
         }
@@ -145,15 +437,19 @@ public class CardService {
             throw new BadRequestException("Карта получателя неактивна.");
         }
 
-        if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
+        if (fromCard.getBalance().compareTo(amount) < 0) {
             throw new BadRequestException("Недостаточно средств на карте отправителя.");
         }
+    }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
-        toCard.setBalance(toCard.getBalance().add(request.getAmount()));
+    private Card findCard(Long cardId) {
+        return cardRepository.findById(cardId)
+                .orElseThrow(() -> new ResourceNotFoundException("Карта не найдена по ID: " + cardId));
+    }
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+    private Card lockCard(Long cardId) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new ResourceNotFoundException("Карта не найдена по ID: " + cardId));
     }
 
     private CardResponse changeCardStatus(Long cardId, CardStatus newStatus) {
@@ -167,7 +463,7 @@ public class CardService {
     private CardResponse mapCardToCardResponse(Card card) {
         CardResponse response = new CardResponse();
         response.setId(card.getId());
-        response.setMaskedCardNumber(cardNumberUtil.maskCardNumber(cardNumberUtil.decryptCardNumber(card.getCardNumber())));
+        response.setMaskedCardNumber(cardNumberUtil.maskCardNumber(card.getCardLastFour()));
         response.setCardholderName(card.getCardholderName());
         response.setExpiryDate(card.getExpiryDate());
         response.setStatus(card.getStatus());
@@ -175,4 +471,33 @@ public class CardService {
         response.setUserId(card.getUser().getId());
         return response;
     }
+
+    private void checkCursorPageSize(int limit) {
+        if (limit < 1 || limit > MAX_CURSOR_PAGE_SIZE) {
+            throw new BadRequestException("Параметр limit должен быть от 1 до " + MAX_CURSOR_PAGE_SIZE);
+        }
+    }
+
+    // запрашиваем limit + 1 строку: лишняя строка означает, что есть следующая страница, и count(*) не нужен
+    private CursorPage<CardResponse> toCursorPage(List<CardSummary> cards, int limit) {
+        boolean hasNext = cards.size() > limit;
+        List<CardSummary> page = hasNext ? cards.subList(0, limit) : cards;
+        String nextCursor = hasNext ? CursorUtil.encode(page.get(page.size() - 1).getId()) : null;
+        return new CursorPage<>(page.stream().map(this::mapSummaryToCardResponse).toList(), nextCursor);
+    }
+
+    private record TransferLegs(Long fromCardId, Long toCardId) {
+    }
+
+    private CardResponse mapSummaryToCardResponse(CardSummary card) {
+        CardResponse response = new CardResponse();
+        response.setId(card.getId());
+        response.setMaskedCardNumber(cardNumberUtil.maskCardNumber(card.getCardLastFour()));
+        response.setCardholderName(card.getCardholderName());
+        response.setExpiryDate(card.getExpiryDate());
+        response.setStatus(card.getStatus());
+        response.setBalance(card.getBalance());
+        response.setUserId(card.getUserId());
+        return response;
+    }
 }
@@ -0,0 +1,144 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// продление сессии без проверки пароля: один индексный поиск по HMAC токена вместо BCrypt.
+// Каждый refresh-токен одноразовый и при использовании заменяется новым из той же цепочки
+@Service
+public class RefreshTokenService {
+
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final SecretKeySpec hashKeySpec;
+    private final Duration expiration;
+    private final SecureRandom secureRandom = new SecureRandom();
+    // HMAC уже использованных токенов -> цепочка: повтор узнаём и отзываем цепочку без чтения таблицы
+    private final Cache<String, String> consumedTokens;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+                               @Value("${jwt.refresh-token.hash-key}") String hashKey,
+                               @Value("${jwt.secret:}") String jwtSecret,
+                               @Value("${jwt.refresh-token.expiration:2592000000}") long expirationMillis,
+                               @Value("${jwt.refresh-token.consumed-cache-size:100000}") long consumedCacheSize) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        // один ключ на подпись JWT и хеши в refresh_tokens: утечка одного раскрыла бы и другое
+        if (hashKey.equals(jwtSecret)) {
+            throw new IllegalArgumentException("Ключ jwt.refresh-token.hash-key должен отличаться от jwt.secret");
+        }
+        this.hashKeySpec = new SecretKeySpec(hashKey.getBytes(StandardCharsets.UTF_8), HASH_ALGORITHM);
+        this.expiration = Duration.ofMillis(expirationMillis);
+        this.consumedTokens = Caffeine.newBuilder()
+                .maximumSize(consumedCacheSize)
+                .expireAfterWrite(expiration)
+                .build();
+    }
+
+    public record Rotation(String refreshToken, User user) {
+    }
+
+    // новая цепочка при входе по паролю; пользователь не читается — нужна только ссылка для user_id
+    @Transactional
+    public String issue(Long userId, Long tokenVersion) {
+        return issue(userRepository.getReferenceById(userId), tokenVersion, UUID.randomUUID().toString());
+    }
+
+    // исключение не откатывает транзакцию: отзыв цепочки при повторном использовании должен сохраниться
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public Rotation rotate(String refreshToken) {
+        String tokenHash = hash(refreshToken);
+
+        String consumedFamilyId = consumedTokens.getIfPresent(tokenHash);
+        if (consumedFamilyId != null) {
+            throw reuseDetected(consumedFamilyId);
+        }
+
+        RefreshToken token = refreshTokenRepository.findByTokenHashWithUser(tokenHash)
+                .orElseThrow(() -> new UnauthorizedException("Refresh-токен недействителен."));
+
+        LocalDateTime now = LocalDateTime.now();
+        if (token.getUsedAt() != null || refreshTokenRepository.markUsed(token.getId(), now) == 0) {
+            consumedTokens.put(tokenHash, token.getFamilyId());
+            throw reuseDetected(token.getFamilyId());
+        }
+
+        User user = token.getUser();
+        if (token.getExpiresAt().isBefore(now) || !token.getTokenVersion().equals(user.getTokenVersion())) {
+            refreshTokenRepository.deleteByFamilyId(token.getFamilyId());
+            throw new UnauthorizedException("Refresh-токен недействителен.");
+        }
+
+        String rotated = issue(user, user.getTokenVersion(), token.getFamilyId());
+        consumedTokens.put(tokenHash, token.getFamilyId());
+        return new Rotation(rotated, user);
+    }
+
+    // выход: отзывается вся цепочка токена, если он принадлежит этому пользователю
+    @Transactional
+    public void revokeFamily(String refreshToken, Long userId) {
+        refreshTokenRepository.findByTokenHashWithUser(hash(refreshToken))
+                .filter(token -> token.getUser().getId().equals(userId))
+                .ifPresent(token -> refreshTokenRepository.deleteByFamilyId(token.getFamilyId()));
+    }
+
+    @Scheduled(cron = "${jwt.refresh-token.purge-cron:0 0 * * * *}")
+    @Transactional
+    public void purgeExpired() {
+        refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    // повтор использованного токена значит, что он утёк: отзываем всю цепочку, включая выданный взамен
+    private UnauthorizedException reuseDetected(String familyId) {
+        refreshTokenRepository.deleteByFamilyId(familyId);
+        return new UnauthorizedException("Refresh-токен уже использован, сессия отозвана.");
+    }
+
+    private String issue(User user, Long tokenVersion, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(refreshToken));
+        token.setUser(user);
+        token.setFamilyId(familyId);
+        token.setTokenVersion(tokenVersion);
+        token.setExpiresAt(LocalDateTime.now().plus(expiration));
+        refreshTokenRepository.save(token);
+        return refreshToken;
+    }
+
+    private String hash(String refreshToken) {
+        try {
+            Mac mac = Mac.getInstance(HASH_ALGORITHM);
+            mac.init(hashKeySpec);
+            return HexFormat.of().formatHex(mac.doFinal(refreshToken.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ошибка при вычислении хеша refresh-токена", e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.service;
+
+public enum TransferLockingMode {
+    // два UPDATE с условием на баланс и статус, без чтения карт в приложение
+    ATOMIC,
+    // SELECT ... FOR UPDATE в порядке возрастания id карт
+    PESSIMISTIC,
+    // без блокировок строк, конфликт ловится по cards.version при коммите
+    OPTIMISTIC
+}
@@ -0,0 +1,69 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferResponse;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.TransferRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class TransferService {
+
+    private final TransferRepository transferRepository;
+
+    public TransferService(TransferRepository transferRepository) {
+        this.transferRepository = transferRepository;
+    }
+
+    // вызывается внутри транзакции перевода; flush сразу, чтобы нарушение уникальности
+    // (user_id, idempotency_key) от параллельного повтора всплыло до коммита и откатило списание
+    @Transactional
+    public Transfer record(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey) {
+        return transferRepository.saveAndFlush(newTransfer(userId, fromCardId, toCardId, amount, idempotencyKey));
+    }
+
+    // пакетный перевод копит записи журнала и сохраняет их одним вызовом в своей транзакции
+    @Transactional
+    public List<Transfer> recordAll(List<Transfer> transfers) {
+        return transferRepository.saveAll(transfers);
+    }
+
+    public Transfer newTransfer(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey) {
+        Transfer transfer = new Transfer();
+        transfer.setUserId(userId);
+        transfer.setFromCardId(fromCardId);
+        transfer.setToCardId(toCardId);
+        transfer.setAmount(amount);
+        transfer.setIdempotencyKey(idempotencyKey);
+        transfer.setCreatedAt(LocalDateTime.now());
+        return transfer;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Transfer> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        return transferRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<TransferResponse> getUserTransfers(Long userId, Pageable pageable) {
+        return transferRepository.findByUserId(userId, pageable)
+                .map(this::mapTransferToTransferResponse);
+    }
+
+    public TransferResponse mapTransferToTransferResponse(Transfer transfer) {
+        TransferResponse response = new TransferResponse();
+        response.setId(transfer.getId());
+        response.setFromCardId(transfer.getFromCardId());
+        response.setToCardId(transfer.getToCardId());
+        response.setAmount(transfer.getAmount());
+        response.setCreatedAt(transfer.getCreatedAt());
+        return response;
+    }
+}
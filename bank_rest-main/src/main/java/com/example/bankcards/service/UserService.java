@@ -1,29 +1,48 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserCreateRequest;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BadRequestException;
 import com.example.bankcards.exception.ResourceNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserCardCount;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.UserSummary;
 import com.example.bankcards.security.Role;
+import com.example.bankcards.security.UserSecurityChangedEvent;
+import com.example.bankcards.util.CursorUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+
     private final UserRepository userRepository;
+    private final CardRepository cardRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, CardRepository cardRepository,
+                       PasswordEncoder passwordEncoder, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
         this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -44,41 +63,104 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден с именем: " + username));
     }
 
-    public List<User> findAllUsers() {
-        return userRepository.findAll();
+    // проекция без пароля и карт; число карт — одним группирующим запросом на всю страницу
+    @Transactional(readOnly = true)
+    public Page<UserResponse> findAllUsers(Pageable pageable, boolean withCardCounts) {
+        Page<UserSummary> users = userRepository.findAllSummaries(pageable);
+        Map<Long, Long> cardCounts = withCardCounts ? countCards(users.getContent()) : null;
+        return users.map(user -> mapSummaryToUserResponse(user, cardCounts));
+    }
+
+    // запрашиваем limit + 1 строку: лишняя строка означает, что есть следующая страница, и count(*) не нужен
+    @Transactional(readOnly = true)
+    public CursorPage<UserResponse> findAllUsersAfter(String after, int limit, boolean withCardCounts) {
+        if (limit < 1 || limit > MAX_CURSOR_PAGE_SIZE) {
+            throw new BadRequestException("Параметр limit должен быть от 1 до " + MAX_CURSOR_PAGE_SIZE);
+        }
+        List<UserSummary> users = userRepository.findSummariesAfter(CursorUtil.decode(after), Limit.of(limit + 1));
+        boolean hasNext = users.size() > limit;
+        List<UserSummary> page = hasNext ? users.subList(0, limit) : users;
+        String nextCursor = hasNext ? CursorUtil.encode(page.get(page.size() - 1).getId()) : null;
+
+        Map<Long, Long> cardCounts = withCardCounts ? countCards(page) : null;
+        return new CursorPage<>(page.stream().map(user -> mapSummaryToUserResponse(user, cardCounts)).toList(), nextCursor);
     }
 
     @Transactional
     public void deleteUser(Long userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new ResourceNotFoundException("Пользователь не найден по ID: " + userId);
-        }
-        userRepository.deleteById(userId);
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден по ID: " + userId));
+        userRepository.delete(user);
+        eventPublisher.publishEvent(new UserSecurityChangedEvent(userId, user.getUsername(), null));
     }
 
     @Transactional
-    public User updateUserRole(Long userId, Role newRole) {
+    public UserResponse updateUserRole(Long userId, Role newRole) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден по ID: " + userId));
         user.setRole(newRole);
-        return userRepository.save(user);
+        // роль зашита в выданные токены, поэтому они должны перестать действовать
+        return mapUserToUserResponse(saveWithNewTokenVersion(user));
+    }
+
+    @Transactional
+    public void changePassword(Long userId, String currentPassword, String newPassword) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден по ID: " + userId));
+        if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+            throw new BadRequestException("Текущий пароль указан неверно.");
+        }
+        user.setPassword(passwordEncoder.encode(newPassword));
+        saveWithNewTokenVersion(user);
+    }
+
+    private User saveWithNewTokenVersion(User user) {
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserSecurityChangedEvent(saved.getId(), saved.getUsername(), saved.getTokenVersion()));
+        return saved;
     }
 
-    public User findById(Long userId) {
-        return userRepository.findById(userId)
+    public UserResponse getUserById(Long userId) {
+        return userRepository.findSummaryById(userId)
+                .map(user -> mapSummaryToUserResponse(user, null))
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден по ID: " + userId));
     }
 
+    private Map<Long, Long> countCards(List<UserSummary> users) {
+        if (users.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> userIds = users.stream().map(UserSummary::getId).toList();
+        return cardRepository.countByUserIds(userIds).stream()
+                .collect(Collectors.toMap(UserCardCount::getUserId, UserCardCount::getCardCount));
+    }
+
+    private UserResponse mapSummaryToUserResponse(UserSummary user, Map<Long, Long> cardCounts) {
+        UserResponse response = new UserResponse();
+        response.setId(user.getId());
+        response.setUsername(user.getUsername());
+        response.setRole(user.getRole().name());
+        response.setCardHolderName(user.getCardHolderName());
+        if (cardCounts != null) {
+            response.setCardCount(cardCounts.getOrDefault(user.getId(), 0L));
+        }
+        return response;
+    }
+
     public UserResponse getUserByUsername(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден"));
 
+        return mapUserToUserResponse(user);
+    }
+
+    private UserResponse mapUserToUserResponse(User user) {
         UserResponse response = new UserResponse();
         response.setId(user.getId());
         response.setUsername(user.getUsername());
         response.setRole(user.getRole().name());
         response.setCardHolderName(user.getCardHolderName());
-
         return response;
     }
 }
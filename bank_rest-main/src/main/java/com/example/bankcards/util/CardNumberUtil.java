@@ -1,49 +1,186 @@
 package com.example.bankcards.util;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 @Component
 public class CardNumberUtil {
 
-    @Value("${card.encryption.secret-key}")
-    private String secretKey;
-
     private static final String ALGORITHM = "AES";
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec secretKeySpec;
+    private final SecretKeySpec hashKeySpec;
+
+    // Cipher и Mac не потокобезопасны, а Cipher.getInstance дорог и проходит через синхронизированный
+    // поиск провайдера. Готовые комплекты берутся из общего пула, а не из ThreadLocal: на виртуальных
+    // потоках каждый запрос — новый поток, и ThreadLocal создавал бы комплект на каждый вызов
+    private final BlockingQueue<CryptoEngine> engines;
+
+    public CardNumberUtil(String secretKey, String hashKey) {
+        this(secretKey, hashKey, 0);
+    }
+
+    // engine-pool-size: сколько свободных комплектов держать; 0 — по два на ядро
+    @Autowired
+    public CardNumberUtil(@Value("${card.encryption.secret-key}") String secretKey,
+                          @Value("${card.encryption.hash-key}") String hashKey,
+                          @Value("${card.encryption.engine-pool-size:0}") int enginePoolSize) {
+        this.secretKeySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.hashKeySpec = new SecretKeySpec(hashKey.getBytes(StandardCharsets.UTF_8), HASH_ALGORITHM);
+        this.engines = new ArrayBlockingQueue<>(enginePoolSize > 0
+                ? enginePoolSize
+                : 2 * Runtime.getRuntime().availableProcessors());
+    }
 
     public String encryptCardNumber(String cardNumber) {
+        CryptoEngine engine = acquireEngine();
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
-            byte[] encryptedBytes = cipher.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            String encrypted = engine.encrypt(cardNumber);
+            engines.offer(engine);
+            return encrypted;
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при шифровании номера карты", e);
         }
     }
 
     public String decryptCardNumber(String encryptedCardNumber) {
+        CryptoEngine engine = acquireEngine();
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedCardNumber));
-            return new String(decryptedBytes, StandardCharsets.UTF_8);
+            String decrypted = engine.decrypt(encryptedCardNumber);
+            engines.offer(engine);
+            return decrypted;
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при расшифровке номера карты", e);
         }
     }
 
+    // слепой индекс: детерминированный HMAC номера карты, по нему ищем карту вместо шифротекста
+    public String hashCardNumber(String cardNumber) {
+        CryptoEngine engine = acquireEngine();
+        try {
+            String hash = engine.hash(cardNumber);
+            engines.offer(engine);
+            return hash;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при вычислении хеша номера карты", e);
+        }
+    }
+
+    public String lastFourDigits(String fullCardNumber) {
+        return fullCardNumber.substring(fullCardNumber.length() - 4);
+    }
+
     public String maskCardNumber(String fullCardNumber) {
         if (fullCardNumber == null || fullCardNumber.length() < 4) {
             return fullCardNumber;
         }
         return "**** **** **** " + fullCardNumber.substring(fullCardNumber.length() - 4);
     }
+
+    // пул не блокирует: пустой — создаём комплект, переполненный — offer() лишний отбрасывает.
+    // Комплект после ошибки в пул не возвращается: состояние Cipher могло остаться неконсистентным
+    private CryptoEngine acquireEngine() {
+        CryptoEngine engine = engines.poll();
+        return engine != null ? engine : createEngine();
+    }
+
+    private CryptoEngine createEngine() {
+        try {
+            return new CryptoEngine(secretKeySpec, hashKeySpec);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось инициализировать шифрование номеров карт", e);
+        }
+    }
+
+    private static final class CryptoEngine {
+
+        private static final HexFormat HEX = HexFormat.of();
+
+        private final Cipher encryptCipher;
+        private final Cipher decryptCipher;
+        private final Mac mac;
+
+        // Base64.Encoder/Decoder работают с массивом целиком, поэтому буферы точного размера;
+        // для номеров карт размеры всегда одинаковые и буферы переиспользуются
+        private byte[] plainBuffer = new byte[0];
+        private byte[] cipherBuffer = new byte[0];
+        private byte[] textBuffer = new byte[0];
+        private byte[] outputBuffer = new byte[0];
+        private final byte[] hashBuffer;
+
+        CryptoEngine(SecretKeySpec secretKeySpec, SecretKeySpec hashKeySpec) throws GeneralSecurityException {
+            this.encryptCipher = Cipher.getInstance(ALGORITHM);
+            this.encryptCipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
+            this.decryptCipher = Cipher.getInstance(ALGORITHM);
+            this.decryptCipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
+            this.mac = Mac.getInstance(HASH_ALGORITHM);
+            this.mac.init(hashKeySpec);
+            this.hashBuffer = new byte[mac.getMacLength()];
+        }
+
+        String encrypt(String cardNumber) throws GeneralSecurityException {
+            byte[] plain = toAsciiBytes(cardNumber);
+            cipherBuffer = sized(cipherBuffer, encryptCipher.getOutputSize(plain.length));
+            encryptCipher.doFinal(plain, 0, plain.length, cipherBuffer, 0);
+            textBuffer = sized(textBuffer, 4 * ((cipherBuffer.length + 2) / 3));
+            Base64.getEncoder().encode(cipherBuffer, textBuffer);
+            return new String(textBuffer, StandardCharsets.ISO_8859_1);
+        }
+
+        String decrypt(String encryptedCardNumber) throws GeneralSecurityException {
+            byte[] text = toAsciiBytes(encryptedCardNumber);
+            cipherBuffer = sized(cipherBuffer, decodedLength(text));
+            Base64.getDecoder().decode(text, cipherBuffer);
+            outputBuffer = sized(outputBuffer, decryptCipher.getOutputSize(cipherBuffer.length));
+            int length = decryptCipher.doFinal(cipherBuffer, 0, cipherBuffer.length, outputBuffer, 0);
+            return new String(outputBuffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        String hash(String cardNumber) throws GeneralSecurityException {
+            byte[] plain = toAsciiBytes(cardNumber);
+            mac.update(plain, 0, plain.length);
+            mac.doFinal(hashBuffer, 0);
+            return HEX.formatHex(hashBuffer);
+        }
+
+        private byte[] toAsciiBytes(String value) {
+            int length = value.length();
+            plainBuffer = sized(plainBuffer, length);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c > 0x7F) {
+                    return value.getBytes(StandardCharsets.UTF_8);
+                }
+                plainBuffer[i] = (byte) c;
+            }
+            return plainBuffer;
+        }
+
+        private static int decodedLength(byte[] text) {
+            int padding = 0;
+            if (text.length > 0 && text[text.length - 1] == '=') {
+                padding++;
+                if (text.length > 1 && text[text.length - 2] == '=') {
+                    padding++;
+                }
+            }
+            return text.length / 4 * 3 - padding;
+        }
+
+        private static byte[] sized(byte[] buffer, int length) {
+            return buffer.length == length ? buffer : new byte[length];
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.BadRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// CSV по RFC 4180 в пределах одной строки: поля с разделителем или кавычкой берутся в кавычки,
+// кавычка внутри поля удваивается. Переводы строк внутри полей не поддерживаются
+public final class CsvUtil {
+
+    private CsvUtil() {
+    }
+
+    // ведущие =, +, -, @ экранируются апострофом, чтобы табличный редактор не принял значение за формулу
+    public static String escape(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String escaped = "=+-@".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (escaped.indexOf(',') >= 0 || escaped.indexOf('"') >= 0 || escaped.indexOf('\n') >= 0 || escaped.indexOf('\r') >= 0) {
+            return '"' + escaped.replace("\"", "\"\"") + '"';
+        }
+        return escaped;
+    }
+
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new BadRequestException("Незакрытая кавычка в строке CSV");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
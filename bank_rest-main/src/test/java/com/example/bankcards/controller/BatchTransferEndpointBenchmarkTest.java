@@ -0,0 +1,134 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.UserCreateRequest;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 10 000 переводов одного владельца: по одному через POST /api/cards/transfer против одного запроса
+// POST /api/cards/transfer/batch. Весь путь — фильтр JWT, валидация, сервис и запись в PostgreSQL
+// с настройками профиля prod; пакетный эндпоинт должен быть быстрее не меньше чем в 10 раз
+@AutoConfigureMockMvc
+@ActiveProfiles("prod")
+@TestPropertySource(properties = "jwt.revocation.poll-interval-millis=3600000")
+class BatchTransferEndpointBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int TRANSFERS = 10_000;
+    private static final int WARMUP_TRANSFERS = 500;
+    private static final double MIN_SPEEDUP = 10.0;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private CardService cardService;
+
+    @Test
+    void batchEndpointIsTenTimesFasterThanSingleTransfers() throws Exception {
+        String username = "bench-" + System.nanoTime();
+        UserCreateRequest user = new UserCreateRequest();
+        user.setUsername(username);
+        user.setPassword("password");
+        long userId = authService.registerUser(user).getId();
+        AuthRequest login = new AuthRequest();
+        login.setUsername(username);
+        login.setPassword("password");
+        String bearer = "Bearer " + authService.createAuthenticationToken(login).getToken();
+
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CardCreateRequest request = new CardCreateRequest();
+            request.setCardNumber(randomCardNumber());
+            request.setCardholderName("BENCH USER");
+            request.setExpiryDate(LocalDate.now().plusYears(3));
+            request.setInitialBalance(new BigDecimal("1000000.00"));
+            cardService.createCard(userId, request);
+            cardNumbers.add(request.getCardNumber());
+        }
+
+        // прогрев JIT и пулов обоих путей
+        sendSingle(bearer, transfers(cardNumbers, WARMUP_TRANSFERS));
+        sendBatch(bearer, transfers(cardNumbers, WARMUP_TRANSFERS));
+
+        List<TransferRequest> transfers = transfers(cardNumbers, TRANSFERS);
+        long singleNanos = sendSingle(bearer, transfers);
+        long batchNanos = sendBatch(bearer, transfers);
+        double speedup = (double) singleNanos / batchNanos;
+
+        System.out.printf("%d переводов: по одному %.0f мс (%.0f в секунду), пакетом %.0f мс (%.0f в секунду), ускорение %.1fx%n",
+                TRANSFERS, singleNanos / 1e6, TRANSFERS / (singleNanos / 1e9),
+                batchNanos / 1e6, TRANSFERS / (batchNanos / 1e9), speedup);
+
+        assertThat(speedup).isGreaterThanOrEqualTo(MIN_SPEEDUP);
+    }
+
+    private long sendSingle(String bearer, List<TransferRequest> transfers) throws Exception {
+        long startedAt = System.nanoTime();
+        for (TransferRequest transfer : transfers) {
+            mockMvc.perform(post("/api/cards/transfer")
+                            .header(HttpHeaders.AUTHORIZATION, bearer)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsBytes(transfer)))
+                    .andExpect(status().isOk());
+        }
+        return System.nanoTime() - startedAt;
+    }
+
+    private long sendBatch(String bearer, List<TransferRequest> transfers) throws Exception {
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(transfers);
+
+        long startedAt = System.nanoTime();
+        mockMvc.perform(post("/api/cards/transfer/batch")
+                        .header(HttpHeaders.AUTHORIZATION, bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(transfers.size()));
+        return System.nanoTime() - startedAt;
+    }
+
+    // первые две карты только отдают, вторые две только получают — как в JdbcBatchingTest
+    private static List<TransferRequest> transfers(List<String> cardNumbers, int count) {
+        List<TransferRequest> transfers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TransferRequest transfer = new TransferRequest();
+            transfer.setFromCardNumber(cardNumbers.get(i % 2));
+            transfer.setToCardNumber(cardNumbers.get(2 + i % 2));
+            transfer.setAmount(BigDecimal.ONE);
+            transfers.add(transfer);
+        }
+        return transfers;
+    }
+
+    private static String randomCardNumber() {
+        return String.format("%016d", ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+    }
+}
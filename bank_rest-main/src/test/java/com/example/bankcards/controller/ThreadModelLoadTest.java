@@ -0,0 +1,200 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.UserCreateRequest;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Нагрузочный прогон GET /api/cards/my: loadtest.connections одновременных соединений, каждое подряд шлёт
+// loadtest.requests запросов. Оба варианта поднимают приложение с профилем virtual-threads (пулы Hikari и
+// Tomcat из application-virtual-threads.yml) и отличаются только spring.threads.virtual.enabled, поэтому
+// сравнивается модель потоков, а не настройки пулов. Виртуальные потоки есть только на Java 21:
+//   mvn -Pvirtual-threads test -Dtest=ThreadModelLoadTest -Dloadtest.connections=5000
+// На Java 17 без профиля Maven идёт только вариант с платформенными потоками.
+// В обычной сборке тест выключен
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=false",
+        "jwt.revocation.poll-interval-millis=3600000"
+})
+@EnabledIfSystemProperty(named = "loadtest.connections", matches = "\\d+")
+class ThreadModelLoadTest extends PostgresIntegrationTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("loadtest.connections", 5000);
+    private static final int REQUESTS_PER_CONNECTION = Integer.getInteger("loadtest.requests", 5);
+    private static final int WARMUP_CONNECTIONS = 100;
+    private static final String PASSWORD = "load-password";
+    private static final Map<String, String> REPORT = new ConcurrentSkipListMap<>();
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private Environment environment;
+
+    @Test
+    void platformThreads() throws Exception {
+        assertThat(Threading.VIRTUAL.isActive(environment)).isFalse();
+
+        REPORT.put("1 platform", load(port, bearer(authService, cardService)));
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    class VirtualThreads {
+
+        @LocalServerPort
+        private int port;
+        @Autowired
+        private AuthService authService;
+        @Autowired
+        private CardService cardService;
+        @Autowired
+        private Environment environment;
+
+        @Test
+        void virtualThreads() throws Exception {
+            assertThat(Threading.VIRTUAL.isActive(environment)).isTrue();
+
+            REPORT.put("2 virtual", load(port, bearer(authService, cardService)));
+        }
+    }
+
+    @AfterAll
+    static void printReport() {
+        System.out.printf("GET /api/cards/my: %d соединений по %d запросов%n", CONNECTIONS, REQUESTS_PER_CONNECTION);
+        System.out.printf("%-10s %10s %10s %10s %10s %8s%n", "потоки", "зап/с", "p50 мс", "p99 мс", "max мс", "ошибок");
+        REPORT.forEach((mode, line) -> System.out.printf("%-10s %s%n", mode.substring(2), line));
+    }
+
+    private static String load(int port, String bearer) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/cards/my"))
+                .header("Authorization", bearer)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        // ответы разбирают несколько потоков клиента, а не по потоку на соединение
+        ExecutorService callbacks = Executors.newFixedThreadPool(4);
+        try {
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(callbacks)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            run(http, request, WARMUP_CONNECTIONS);
+            return run(http, request, CONNECTIONS);
+        } finally {
+            callbacks.shutdownNow();
+        }
+    }
+
+    private static String run(HttpClient http, HttpRequest request, int connections) throws Exception {
+        Stats stats = new Stats(connections * REQUESTS_PER_CONNECTION);
+        long startedAt = System.nanoTime();
+        CompletableFuture<?>[] chains = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            chains[i] = send(http, request, REQUESTS_PER_CONNECTION, stats);
+        }
+        CompletableFuture.allOf(chains).get(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+        assertThat(stats.errors.get()).as("ошибки и таймауты").isZero();
+        double[] sorted = Arrays.copyOf(stats.latencies, stats.count.get());
+        Arrays.sort(sorted);
+        return String.format("%10.0f %10.1f %10.1f %10.1f %8d", sorted.length / seconds,
+                percentile(sorted, 50), percentile(sorted, 99), sorted[sorted.length - 1], stats.errors.get());
+    }
+
+    // запросы одного соединения идут подряд: следующий уходит после ответа на предыдущий
+    private static CompletableFuture<Void> send(HttpClient http, HttpRequest request, int remaining, Stats stats) {
+        if (remaining == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long startedAt = System.nanoTime();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    stats.record((System.nanoTime() - startedAt) / 1e6, error == null && response.statusCode() == 200);
+                    return null;
+                })
+                .thenCompose(ignored -> send(http, request, remaining - 1, stats));
+    }
+
+    private static String bearer(AuthService authService, CardService cardService) {
+        UserCreateRequest user = new UserCreateRequest();
+        user.setUsername("load-" + System.nanoTime());
+        user.setPassword(PASSWORD);
+        long userId = authService.registerUser(user).getId();
+        for (int i = 0; i < 3; i++) {
+            CardCreateRequest card = new CardCreateRequest();
+            card.setCardNumber(String.format("%016d", ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L)));
+            card.setCardholderName("LOAD USER");
+            card.setExpiryDate(LocalDate.now().plusYears(3));
+            card.setInitialBalance(new BigDecimal("100.00"));
+            cardService.createCard(userId, card);
+        }
+        AuthRequest login = new AuthRequest();
+        login.setUsername(user.getUsername());
+        login.setPassword(PASSWORD);
+        return "Bearer " + authService.createAuthenticationToken(login).getToken();
+    }
+
+    private static double percentile(double[] sorted, int percentile) {
+        return sorted[Math.max(0, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1)];
+    }
+
+    private static final class Stats {
+
+        final double[] latencies;
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+
+        Stats(int capacity) {
+            latencies = new double[capacity];
+        }
+
+        void record(double millis, boolean ok) {
+            latencies[count.getAndIncrement()] = millis;
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Регрессия планов для запросов карт по владельцу: если индексы по cards.user_id пропадут или
+// перестанут подходить запросам, планировщик вернётся к Seq Scan и тест упадёт.
+// Данные и статистика создаются в транзакции теста и откатываются после него
+@Transactional
+class CardIndexPlanTest extends PostgresIntegrationTest {
+
+    private static final int USERS = 200;
+    private static final int CARDS_PER_USER = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long userId;
+    private long cardId;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO users (username, password, role, card_holder_name) "
+                + "SELECT 'plan-user-' || n, 'x', 'USER', 'PLAN USER' FROM generate_series(1, ?) n", USERS);
+        jdbcTemplate.update("INSERT INTO cards (card_number, card_number_hash, card_last4, cardholder_name, "
+                + "expiry_date, status, balance, user_id) "
+                + "SELECT 'plan-' || u.id || '-' || n, md5(u.id || '-' || n), lpad(n::text, 4, '0'), 'PLAN USER', "
+                + "current_date + 365, CASE WHEN n % 10 = 0 THEN 'BLOCKED' ELSE 'ACTIVE' END, 100, u.id "
+                + "FROM users u CROSS JOIN generate_series(1, ?) n WHERE u.username LIKE 'plan-user-%'",
+                CARDS_PER_USER);
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE cards");
+
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'plan-user-100'", Long.class);
+        cardId = jdbcTemplate.queryForObject("SELECT max(id) FROM cards WHERE user_id = ?", Long.class, userId);
+    }
+
+    // findSummariesByUserIdAfter: страница карт владельца по курсору
+    @Test
+    void ownerKeysetPageUsesUserIdIdIndex() {
+        String plan = explain("SELECT id, card_last4, cardholder_name, expiry_date, status, balance, user_id "
+                + "FROM cards WHERE user_id = " + userId + " AND id > 0 ORDER BY id LIMIT 20");
+
+        assertThat(plan).contains("idx_cards_user_id_id").doesNotContain("Seq Scan on cards");
+    }
+
+    // findByUserId / findSummariesByUserId: страница и её count
+    @Test
+    void ownerPageAndCountUseUserIdIndex() {
+        String page = explain("SELECT * FROM cards WHERE user_id = " + userId + " OFFSET 20 LIMIT 20");
+        String count = explain("SELECT count(*) FROM cards WHERE user_id = " + userId);
+
+        assertThat(page).contains("idx_cards_user_id_").doesNotContain("Seq Scan on cards");
+        assertThat(count).contains("idx_cards_user_id_").doesNotContain("Seq Scan on cards");
+    }
+
+    // findByUserIdAndStatus
+    @Test
+    void ownerCardsByStatusUseUserIdIndex() {
+        String plan = explain("SELECT * FROM cards WHERE user_id = " + userId + " AND status = 'ACTIVE'");
+
+        assertThat(plan).contains("idx_cards_user_id_").doesNotContain("Seq Scan on cards");
+    }
+
+    // findByIdAndUserId / findSummaryByIdAndUserId
+    @Test
+    void cardOfOwnerDoesNotScanCards() {
+        String plan = explain("SELECT * FROM cards WHERE id = " + cardId + " AND user_id = " + userId);
+
+        assertThat(plan).contains("Index").doesNotContain("Seq Scan on cards");
+    }
+
+    // каскад UserService.deleteUser: удаление карт владельца
+    @Test
+    void ownerCardsDeletionDoesNotScanCards() {
+        String plan = explain("DELETE FROM cards WHERE user_id = " + userId);
+
+        assertThat(plan).contains("idx_cards_user_id_").doesNotContain("Seq Scan on cards");
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Проверка токена в JwtAuthenticationFilter: прежние три разбора с новым JwtParser на каждый
+// (extractUsername, затем isTokenValid -> extractUsername и isTokenExpired) против одного разбора общим
+// парсером и против попадания в VerifiedClaimsCache. Запуск: mvn -Pbenchmark test -DskipTests -Dbenchmark=JwtFilterPathBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterPathBenchmark {
+
+    private static final String SECRET = "eR5$kL8@qT2#vM9*pX6&wC3%zN1!bV7^dF4";
+
+    private UserDetails userDetails;
+    private Key key;
+    private JwtParser jwtParser;
+    private JwtTokenProvider jwtTokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        TokenSigner tokenSigner = new HmacTokenSigner(SECRET);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        jwtParser = new JwtConfig().jwtParser(tokenSigner);
+        jwtTokenProvider = new JwtTokenProvider(tokenSigner, jwtParser, new VerifiedClaimsCache(10_000));
+        jwtTokenProvider.setExpirationMillis(TimeUnit.HOURS.toMillis(1));
+        userDetails = User.withUsername("user").password("x").authorities("ROLE_USER").build();
+        token = jwtTokenProvider.generateToken(userDetails, 2L, 0L);
+        jwtTokenProvider.extractClaims(token);
+    }
+
+    @Benchmark
+    public boolean threeParsesPerRequest() {
+        String username = parseWithNewParser().getSubject();
+        return username.equals(userDetails.getUsername())
+                && parseWithNewParser().getSubject().equals(userDetails.getUsername())
+                && !parseWithNewParser().getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public void parseOnceWithSharedParser(Blackhole blackhole) {
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        blackhole.consume(claims.getSubject().equals(userDetails.getUsername())
+                && !claims.getExpiration().before(new Date()));
+        blackhole.consume(jwtTokenProvider.extractAuthorities(claims));
+    }
+
+    @Benchmark
+    public void cachedClaims(Blackhole blackhole) {
+        Claims claims = jwtTokenProvider.extractClaims(token);
+        blackhole.consume(jwtTokenProvider.isTokenValid(claims, userDetails));
+        blackhole.consume(jwtTokenProvider.extractAuthorities(claims));
+    }
+
+    private Claims parseWithNewParser() {
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.UserCreateRequest;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Наплыв входов против чтения карт на настоящем Tomcat с маленьким пулом потоков. Пока LOGIN_CLIENTS
+// клиентов без пауз входят в систему, один клиент подряд читает GET /api/cards/my и замеряет p99.
+// С пулом PasswordCheckExecutor BCrypt идёт через POST /api/auth/login вне потоков Tomcat; без него —
+// через тестовый POST /api/auth/login-blocking, который проверяет пароль прямо на потоке запроса
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "server.tomcat.threads.max=" + PasswordCheckLoadTest.TOMCAT_THREADS,
+        "server.tomcat.threads.min-spare=" + PasswordCheckLoadTest.TOMCAT_THREADS,
+        "jwt.revocation.poll-interval-millis=3600000"
+})
+class PasswordCheckLoadTest extends PostgresIntegrationTest {
+
+    static final int TOMCAT_THREADS = 8;
+    private static final int LOGIN_CLIENTS = 2 * TOMCAT_THREADS;
+    private static final int WARMUP_PROBES = 50;
+    private static final int PROBES = 100;
+    private static final String PASSWORD = "load-password";
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    @Test
+    void loginFloodDoesNotStarveCardReads() throws Exception {
+        UserCreateRequest user = new UserCreateRequest();
+        user.setUsername("load-" + System.nanoTime());
+        user.setPassword(PASSWORD);
+        long userId = authService.registerUser(user).getId();
+        AuthRequest login = new AuthRequest();
+        login.setUsername(user.getUsername());
+        login.setPassword(PASSWORD);
+        String bearer = "Bearer " + authService.createAuthenticationToken(login).getToken();
+        for (int i = 0; i < 3; i++) {
+            CardCreateRequest card = new CardCreateRequest();
+            card.setCardNumber(String.format("%016d", ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L)));
+            card.setCardholderName("LOAD USER");
+            card.setExpiryDate(LocalDate.now().plusYears(3));
+            card.setInitialBalance(new BigDecimal("100.00"));
+            cardService.createCard(userId, card);
+        }
+        byte[] loginBody = objectMapper.writeValueAsBytes(login);
+
+        probeCards(bearer, WARMUP_PROBES);
+        double[] idle = probeCards(bearer, PROBES);
+        Result pooled = underLoginFlood("/api/auth/login", loginBody, bearer);
+        Result blocking = underLoginFlood("/api/auth/login-blocking", loginBody, bearer);
+
+        System.out.printf("GET /api/cards/my, Tomcat %d потоков, %d клиентов входа:%n", TOMCAT_THREADS, LOGIN_CLIENTS);
+        System.out.printf("  без входов:              p50 %.1f мс, p99 %.1f мс%n", percentile(idle, 50), percentile(idle, 99));
+        print("с PasswordCheckExecutor", pooled);
+        print("BCrypt на потоке Tomcat", blocking);
+
+        assertThat(pooled.logins()).isPositive();
+        assertThat(blocking.logins()).isPositive();
+        assertThat(percentile(pooled.latencies(), 99)).isLessThan(percentile(blocking.latencies(), 99));
+    }
+
+    private Result underLoginFlood(String loginPath, byte[] loginBody, String bearer) throws Exception {
+        HttpRequest loginRequest = HttpRequest.newBuilder(uri(loginPath))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(loginBody))
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger logins = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService flood = Executors.newFixedThreadPool(LOGIN_CLIENTS);
+        for (int i = 0; i < LOGIN_CLIENTS; i++) {
+            flood.submit(() -> {
+                while (running.get()) {
+                    int status = http.send(loginRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status == 200) {
+                        logins.incrementAndGet();
+                    } else if (status == 503) {
+                        rejected.incrementAndGet();
+                    } else {
+                        throw new IllegalStateException(loginPath + " вернул " + status);
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            // очередь входов успевает заполниться до первых замеров
+            Thread.sleep(1000);
+            int loginsBefore = logins.get();
+            int rejectedBefore = rejected.get();
+            long startedAt = System.nanoTime();
+            double[] latencies = probeCards(bearer, PROBES);
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            return new Result(latencies, logins.get() - loginsBefore, rejected.get() - rejectedBefore, seconds);
+        } finally {
+            running.set(false);
+            flood.shutdown();
+            assertThat(flood.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    private double[] probeCards(String bearer, int count) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/cards/my"))
+                .header("Authorization", bearer)
+                .GET()
+                .build();
+        double[] latencies = new double[count];
+        for (int i = 0; i < count; i++) {
+            long startedAt = System.nanoTime();
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            latencies[i] = (System.nanoTime() - startedAt) / 1e6;
+            assertThat(response.statusCode()).isEqualTo(200);
+        }
+        return latencies;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static void print(String mode, Result result) {
+        System.out.printf("  %-24s p50 %.1f мс, p99 %.1f мс; входов %d (%.0f в секунду), отказов 503: %d%n", mode + ":",
+                percentile(result.latencies(), 50), percentile(result.latencies(), 99),
+                result.logins(), result.logins() / result.seconds(), result.rejected());
+    }
+
+    private static double percentile(double[] latencies, int percentile) {
+        double[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1)];
+    }
+
+    private record Result(double[] latencies, int logins, int rejected, double seconds) {
+    }
+
+    // тот же вход, но без пула: BCrypt занимает поток Tomcat на всё время проверки, как до PasswordCheckExecutor
+    @TestConfiguration
+    static class BlockingLoginConfig {
+
+        @Bean
+        BlockingLoginController blockingLoginController(AuthService authService) {
+            return new BlockingLoginController(authService);
+        }
+    }
+
+    @RestController
+    static class BlockingLoginController {
+
+        private final AuthService authService;
+
+        BlockingLoginController(AuthService authService) {
+            this.authService = authService;
+        }
+
+        @PostMapping("/api/auth/login-blocking")
+        AuthResponse login(@RequestBody AuthRequest request) {
+            return authService.createAuthenticationToken(request);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность выпуска и проверки токена для каждого jwt.algorithm. Проверка идёт общим
+// JwtParser без VerifiedClaimsCache, то есть как первый запрос с новым токеном.
+// Запуск: mvn -Pbenchmark test -DskipTests -Dbenchmark=TokenSignerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenSignerBenchmark {
+
+    @Param({"HS256", "ES256"})
+    private String algorithm;
+
+    private UserDetails userDetails;
+    private JwtTokenProvider jwtTokenProvider;
+    private JwtParser jwtParser;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenSigner tokenSigner = switch (algorithm) {
+            case "HS256" -> new HmacTokenSigner("eR5$kL8@qT2#vM9*pX6&wC3%zN1!bV7^dF4");
+            case "ES256" -> {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+                KeyPair keyPair = generator.generateKeyPair();
+                yield new EcdsaTokenSigner(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()),
+                        Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+            }
+            default -> throw new IllegalArgumentException(algorithm);
+        };
+        jwtParser = new JwtConfig().jwtParser(tokenSigner);
+        jwtTokenProvider = new JwtTokenProvider(tokenSigner, jwtParser, new VerifiedClaimsCache(10_000));
+        jwtTokenProvider.setExpirationMillis(TimeUnit.HOURS.toMillis(1));
+        userDetails = User.withUsername("user").password("x").authorities("ROLE_USER").build();
+        token = jwtTokenProvider.generateToken(userDetails, 2L, 0L);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtTokenProvider.generateToken(userDetails, 2L, 0L);
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.RefreshTokenRequest;
+import com.example.bankcards.dto.UserCreateRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Вход с паролем против продления по refresh-токену на одном пользователе, подряд в одном потоке.
+// Вход платит за BCrypt, продление — за поиск по уникальному индексу, условный UPDATE и подпись токена
+class AuthRenewalThroughputTest extends PostgresIntegrationTest {
+
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 50;
+    private static final String PASSWORD = "renewal-password";
+
+    @Autowired
+    private AuthService authService;
+
+    @Test
+    void refreshIsCheaperThanLogin() {
+        UserCreateRequest user = new UserCreateRequest();
+        user.setUsername("renewal-" + System.nanoTime());
+        user.setPassword(PASSWORD);
+        authService.registerUser(user);
+        AuthRequest login = new AuthRequest();
+        login.setUsername(user.getUsername());
+        login.setPassword(PASSWORD);
+
+        String refreshToken = null;
+        for (int i = 0; i < WARMUP; i++) {
+            refreshToken = refresh(authService.createAuthenticationToken(login).getRefreshToken());
+        }
+
+        long loginStartedAt = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            refreshToken = authService.createAuthenticationToken(login).getRefreshToken();
+        }
+        long loginNanos = System.nanoTime() - loginStartedAt;
+
+        long refreshStartedAt = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            refreshToken = refresh(refreshToken);
+        }
+        long refreshNanos = System.nanoTime() - refreshStartedAt;
+
+        System.out.printf("login: %d за %.0f мс, %.1f мс/оп, %.0f оп/с%n", ITERATIONS, loginNanos / 1e6,
+                loginNanos / 1e6 / ITERATIONS, ITERATIONS / (loginNanos / 1e9));
+        System.out.printf("refresh: %d за %.0f мс, %.1f мс/оп, %.0f оп/с%n", ITERATIONS, refreshNanos / 1e6,
+                refreshNanos / 1e6 / ITERATIONS, ITERATIONS / (refreshNanos / 1e9));
+
+        assertThat(refreshNanos).isLessThan(loginNanos);
+    }
+
+    private String refresh(String refreshToken) {
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(refreshToken);
+        AuthResponse response = authService.refreshAuthenticationToken(request);
+        assertThat(response.getToken()).isNotBlank();
+        return response.getRefreshToken();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.BatchTransferItemResponse;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardNumberUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Нагрузочная проверка переводов: потоки одновременно гоняют деньги между несколькими картами во встречных
+// направлениях, часть потоков — пакетами. Сумма балансов не должна меняться, баланс каждой карты — сходиться
+// с журналом transfers, а режимы с упорядоченными блокировками не должны упираться в дедлоки.
+// Заодно сравниваются режимы: пропускная способность и задержки одиночного перевода (с повторами) при высокой
+// конкуренции за четыре карты и без неё, когда у каждого потока свои карты. Сводка печатается в конце класса
+class CardTransferConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int CARDS = 4;
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 50;
+    private static final int BATCH_SIZE = 10;
+    private static final int DISJOINT_TRANSFERS_PER_THREAD = 100;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    // "сценарий / режим" -> строка сводки
+    private static final Map<String, String> REPORT = new ConcurrentSkipListMap<>();
+
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardNumberUtil cardNumberUtil;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @ParameterizedTest
+    @EnumSource(TransferLockingMode.class)
+    void crossingTransfersConserveBalances(TransferLockingMode mode) throws Exception {
+        CardService transfers = cardService(mode);
+        long userId = createUser("stress-" + mode);
+        String[] cardNumbers = new String[CARDS];
+        long[] cardIds = new long[CARDS];
+        for (int i = 0; i < CARDS; i++) {
+            cardNumbers[i] = randomCardNumber();
+            cardIds[i] = createCard(userId, cardNumbers[i]);
+        }
+        BigDecimal totalBefore = totalBalance(userId);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger concurrencyFailures = new AtomicInteger();
+        Queue<ConcurrencyFailureException> failures = new ConcurrentLinkedQueue<>();
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        double seconds = runConcurrently(thread -> {
+            boolean batches = thread % 4 == 0;
+            for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                long startedAt = System.nanoTime();
+                try {
+                    if (batches) {
+                        BatchTransferRequest batch = new BatchTransferRequest();
+                        List<TransferRequest> items = new ArrayList<>(BATCH_SIZE);
+                        for (int i = 0; i < BATCH_SIZE; i++) {
+                            items.add(randomTransfer(cardNumbers));
+                        }
+                        batch.setTransfers(items);
+                        for (BatchTransferItemResponse item : transfers.transferFundsBatch(userId, batch).getResults()) {
+                            (item.isSuccess() ? succeeded : rejected).incrementAndGet();
+                        }
+                    } else {
+                        transfers.transferFunds(userId, randomTransfer(cardNumbers), null);
+                        succeeded.incrementAndGet();
+                    }
+                } catch (BadRequestException e) {
+                    rejected.incrementAndGet();
+                } catch (ConcurrencyFailureException e) {
+                    concurrencyFailures.addAndGet(batches ? BATCH_SIZE : 1);
+                    failures.add(e);
+                }
+                // задержка считается только для одиночных переводов, включая отказы и повторы
+                if (!batches) {
+                    latencies.add(System.nanoTime() - startedAt);
+                }
+            }
+        });
+
+        int attempted = succeeded.get() + rejected.get() + concurrencyFailures.get();
+        System.out.printf("%s: %d переводов (%d выполнено, %d отклонено, %d исчерпали повторы) за %.2f с, %.0f переводов/с%n",
+                mode, attempted, succeeded.get(), rejected.get(), concurrencyFailures.get(), seconds, attempted / seconds);
+        report("4 общие карты", mode, attempted, concurrencyFailures.get(), seconds, latencies);
+
+        assertThat(totalBalance(userId)).isEqualByComparingTo(totalBefore);
+        assertThat(succeeded.get()).isPositive();
+        for (long cardId : cardIds) {
+            BigDecimal balance = jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", BigDecimal.class, cardId);
+            BigDecimal incoming = jdbcTemplate.queryForObject(
+                    "SELECT coalesce(sum(amount), 0) FROM transfers WHERE to_card_id = ?", BigDecimal.class, cardId);
+            BigDecimal outgoing = jdbcTemplate.queryForObject(
+                    "SELECT coalesce(sum(amount), 0) FROM transfers WHERE from_card_id = ?", BigDecimal.class, cardId);
+            assertThat(balance).isNotNegative().isEqualByComparingTo(INITIAL_BALANCE.add(incoming).subtract(outgoing));
+        }
+        Integer ledgerRows = jdbcTemplate.queryForObject("SELECT count(*) FROM transfers WHERE user_id = ?", Integer.class, userId);
+        assertThat(ledgerRows).isEqualTo(succeeded.get());
+        if (mode == TransferLockingMode.OPTIMISTIC) {
+            // повторы могут закончиться только на конфликте версий; дедлок (CannotAcquireLockException и
+            // прочие PessimisticLockingFailureException) значит, что UPDATE идут не по возрастанию id
+            assertThat(failures).allSatisfy(e -> assertThat(e).isInstanceOf(OptimisticLockingFailureException.class));
+        } else {
+            // блокировки берутся по возрастанию id во всех путях, поэтому дедлоков и исчерпанных повторов нет
+            assertThat(failures).isEmpty();
+        }
+    }
+
+    // обычная нагрузка: переводы разных клиентов почти не пересекаются по картам
+    @ParameterizedTest
+    @EnumSource(TransferLockingMode.class)
+    void disjointTransfersLatency(TransferLockingMode mode) throws Exception {
+        CardService transfers = cardService(mode);
+        long userId = createUser("disjoint-" + mode);
+        String[][] cardPairs = new String[THREADS][2];
+        for (String[] pair : cardPairs) {
+            for (int i = 0; i < pair.length; i++) {
+                pair[i] = randomCardNumber();
+                createCard(userId, pair[i]);
+            }
+        }
+        BigDecimal totalBefore = totalBalance(userId);
+
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        double seconds = runConcurrently(thread -> {
+            String[] pair = cardPairs[thread];
+            for (int op = 0; op < DISJOINT_TRANSFERS_PER_THREAD; op++) {
+                TransferRequest request = new TransferRequest();
+                request.setFromCardNumber(pair[op % 2]);
+                request.setToCardNumber(pair[(op + 1) % 2]);
+                request.setAmount(BigDecimal.ONE);
+                long startedAt = System.nanoTime();
+                transfers.transferFunds(userId, request, null);
+                latencies.add(System.nanoTime() - startedAt);
+            }
+        });
+        report("свои карты у потока", mode, THREADS * DISJOINT_TRANSFERS_PER_THREAD, 0, seconds, latencies);
+
+        // без общих карт нет ни конфликтов версий, ни ожидания блокировок: любой отказ долетел бы сюда исключением
+        assertThat(latencies).hasSize(THREADS * DISJOINT_TRANSFERS_PER_THREAD);
+        assertThat(totalBalance(userId)).isEqualByComparingTo(totalBefore);
+    }
+
+    @AfterAll
+    static void printReport() {
+        System.out.printf("%-22s %-12s %8s %8s %9s %9s %9s %9s%n",
+                "сценарий", "режим", "перев.", "отказов", "перев./с", "p50, мс", "p99, мс", "max, мс");
+        REPORT.values().forEach(System.out::println);
+    }
+
+    // отдельный экземпляр под каждый режим; переводы сами открывают транзакции через TransactionTemplate
+    private CardService cardService(TransferLockingMode mode) {
+        return new CardService(cardRepository, userRepository, cardNumberUtil, userService,
+                transferService, transactionManager, mode, 5, 5, 500);
+    }
+
+    private double runConcurrently(Worker worker) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : workers) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            return (System.nanoTime() - startedAt) / 1e9;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void report(String scenario, TransferLockingMode mode, int transfers, int gaveUp, double seconds,
+                               Queue<Long> latencies) {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        REPORT.put(scenario + " / " + mode, String.format("%-22s %-12s %8d %8d %9.0f %9.1f %9.1f %9.1f",
+                scenario, mode, transfers, gaveUp, transfers / seconds,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private long createUser(String prefix) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (username, password, role, card_holder_name) "
+                + "VALUES (?, 'x', 'USER', 'STRESS USER') RETURNING id", Long.class, prefix + "-" + System.nanoTime());
+    }
+
+    private long createCard(long userId, String cardNumber) {
+        CardCreateRequest request = new CardCreateRequest();
+        request.setCardNumber(cardNumber);
+        request.setCardholderName("STRESS USER");
+        request.setExpiryDate(LocalDate.now().plusYears(3));
+        request.setInitialBalance(INITIAL_BALANCE);
+        return cardService.createCard(userId, request).getId();
+    }
+
+    private BigDecimal totalBalance(long userId) {
+        return jdbcTemplate.queryForObject("SELECT sum(balance) FROM cards WHERE user_id = ?", BigDecimal.class, userId);
+    }
+
+    private static TransferRequest randomTransfer(String[] cardNumbers) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(cardNumbers.length);
+        int to = (from + 1 + random.nextInt(cardNumbers.length - 1)) % cardNumbers.length;
+        TransferRequest request = new TransferRequest();
+        request.setFromCardNumber(cardNumbers[from]);
+        request.setToCardNumber(cardNumbers[to]);
+        request.setAmount(BigDecimal.valueOf(random.nextInt(1, 101)));
+        return request;
+    }
+
+    private static String randomCardNumber() {
+        return String.format("%016d", ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+}
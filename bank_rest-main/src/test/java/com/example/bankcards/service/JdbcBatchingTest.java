@@ -0,0 +1,180 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardNumberUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Профиль prod должен превращать массовые записи Hibernate в пакеты JDBC: вставки карт и журнала
+// переводов по hibernate.jdbc.batch_size, обновления балансов — одним пакетом на порцию.
+// Число пакетов и одиночных выполнений считает слушатель сессий Hibernate
+@ActiveProfiles("prod")
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.session.events.auto=com.example.bankcards.service.JdbcBatchingTest$JdbcExecutionCounter",
+        // фоновая догрузка отзывов не должна попадать в счётчики
+        "jwt.revocation.poll-interval-millis=3600000"
+})
+class JdbcBatchingTest extends PostgresIntegrationTest {
+
+    private static final int CARDS = 1000;
+    private static final int BATCH_SIZE = 50;
+    private static final int TRANSFERS = 500;
+
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private CardNumberUtil cardNumberUtil;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    void bulkCardInsertsAreBatched() {
+        long userId = createUser("batch-cards");
+
+        // та же вставка без пакетов (batch_size 1 только для этой сессии) — для сравнения
+        long unbatchedNanos = saveCards(userId, 1);
+        int unbatchedStatements = JdbcExecutionCounter.statements.get();
+        long batchedNanos = saveCards(userId, null);
+        int batches = JdbcExecutionCounter.batches.get();
+        int statements = JdbcExecutionCounter.statements.get();
+
+        System.out.printf("%d карт: без пакетов %d одиночных запросов за %.0f мс, с пакетами %d пакетов JDBC и %d одиночных запросов за %.0f мс%n",
+                CARDS, unbatchedStatements, unbatchedNanos / 1e6, batches, statements, batchedNanos / 1e6);
+
+        assertThat(unbatchedStatements).isGreaterThanOrEqualTo(CARDS);
+        assertThat(batches).isEqualTo(CARDS / BATCH_SIZE);
+        // только nextval: один на allocationSize id
+        assertThat(statements).isLessThanOrEqualTo(CARDS / BATCH_SIZE + 1);
+    }
+
+    @Test
+    void batchTransferWritesAreBatched() {
+        long userId = createUser("batch-transfers");
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CardCreateRequest request = new CardCreateRequest();
+            request.setCardNumber(randomCardNumber());
+            request.setCardholderName("BATCH USER");
+            request.setExpiryDate(LocalDate.now().plusYears(3));
+            request.setInitialBalance(new BigDecimal("100000.00"));
+            cardService.createCard(userId, request);
+            cardNumbers.add(request.getCardNumber());
+        }
+        List<TransferRequest> transfers = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            TransferRequest transfer = new TransferRequest();
+            // первые две карты только отдают, вторые две только получают: балансы всех четырёх меняются
+            transfer.setFromCardNumber(cardNumbers.get(i % 2));
+            transfer.setToCardNumber(cardNumbers.get(2 + i % 2));
+            transfer.setAmount(BigDecimal.ONE);
+            transfers.add(transfer);
+        }
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(transfers);
+
+        JdbcExecutionCounter.reset();
+        long startedAt = System.nanoTime();
+        BatchTransferResponse response = cardService.transferFundsBatch(userId, request);
+        long nanos = System.nanoTime() - startedAt;
+        int batches = JdbcExecutionCounter.batches.get();
+        int statements = JdbcExecutionCounter.statements.get();
+
+        System.out.printf("%d переводов пакетом: %d пакетов JDBC и %d одиночных запросов за %.0f мс%n",
+                TRANSFERS, batches, statements, nanos / 1e6);
+
+        assertThat(response.getSucceeded()).isEqualTo(TRANSFERS);
+        // 500 записей журнала по 50 и одно обновление четырёх балансов
+        assertThat(batches).isEqualTo(TRANSFERS / BATCH_SIZE + 1);
+        // SELECT ... FOR UPDATE и nextval для id журнала
+        assertThat(statements).isLessThanOrEqualTo(TRANSFERS / BATCH_SIZE + 2);
+    }
+
+    private long saveCards(long userId, Integer jdbcBatchSize) {
+        List<Card> cards = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = randomCardNumber();
+            Card card = new Card();
+            card.setCardNumber(cardNumberUtil.encryptCardNumber(cardNumber));
+            card.setCardNumberHash(cardNumberUtil.hashCardNumber(cardNumber));
+            card.setCardLastFour(cardNumberUtil.lastFourDigits(cardNumber));
+            card.setCardholderName("BATCH USER");
+            card.setExpiryDate(LocalDate.now().plusYears(3));
+            card.setStatus(CardStatus.ACTIVE);
+            card.setBalance(BigDecimal.ZERO);
+            cards.add(card);
+        }
+
+        JdbcExecutionCounter.reset();
+        long startedAt = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+            User user = entityManager.getReference(User.class, userId);
+            cards.forEach(card -> card.setUser(user));
+            cardRepository.saveAll(cards);
+        });
+        return System.nanoTime() - startedAt;
+    }
+
+    private long createUser(String prefix) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (username, password, role, card_holder_name) "
+                + "VALUES (?, 'x', 'USER', 'BATCH USER') RETURNING id", Long.class, prefix + "-" + System.nanoTime());
+    }
+
+    private static String randomCardNumber() {
+        return String.format("%016d", ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+    }
+
+    // Hibernate создаёт экземпляр на каждую сессию по имени класса, поэтому счётчики общие
+    public static class JdbcExecutionCounter implements SessionEventListener {
+
+        static final AtomicInteger batches = new AtomicInteger();
+        static final AtomicInteger statements = new AtomicInteger();
+
+        static void reset() {
+            batches.set(0);
+            statements.set(0);
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            batches.incrementAndGet();
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            statements.incrementAndGet();
+        }
+    }
+}
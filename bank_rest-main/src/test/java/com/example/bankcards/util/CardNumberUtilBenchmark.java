@@ -0,0 +1,82 @@
+package com.example.bankcards.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// Прежний путь CardNumberUtil (новый SecretKeySpec и Cipher.getInstance на каждый вызов) против пула
+// готовых комплектов. Запуск: mvn -Pbenchmark test -DskipTests -Dbenchmark=CardNumberUtilBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberUtilBenchmark {
+
+    private static final String SECRET_KEY = "0123456789abcdef0123456789abcdef";
+    private static final String HASH_KEY = "bN4#hQ7!sW2@kD9$mF5^tR8&yL3*pZ6%";
+    private static final String CARD_NUMBER = "4276380012345678";
+
+    private CardNumberUtil cardNumberUtil;
+    private String encryptedCardNumber;
+
+    @Setup
+    public void setUp() {
+        cardNumberUtil = new CardNumberUtil(SECRET_KEY, HASH_KEY);
+        encryptedCardNumber = cardNumberUtil.encryptCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String encryptPerCall() throws Exception {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String encryptPooled() {
+        return cardNumberUtil.encryptCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decryptPerCall() throws Exception {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedCardNumber)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decryptPooled() {
+        return cardNumberUtil.decryptCardNumber(encryptedCardNumber);
+    }
+
+    @Benchmark
+    public String hashPerCall() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(HASH_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String hashPooled() {
+        return cardNumberUtil.hashCardNumber(CARD_NUMBER);
+    }
+}